@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import com.jkoolcloud.tnt4j.TrackingLogger;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.core.ValueTypes;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Compact aggregates of child events streamed for an activity: event count, first and last event time, maximum event
+ * severity and first child exception. Used in streaming activity mode instead of retaining child events in the
+ * activity.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager#setStreamActivities(boolean)
+ */
+public class ActivityStats {
+	/**
+	 * Name of snapshot carrying activity aggregates
+	 */
+	public static final String SNAPSHOT_NAME = "ActivityStats";
+
+	private long count;
+	private long firstTime;
+	private long lastTime;
+	private OpLevel maxSeverity = OpLevel.NONE;
+	private Throwable exception;
+
+	/**
+	 * Adds streamed child event to aggregates.
+	 *
+	 * @param event
+	 *            streamed child event
+	 * @param ex
+	 *            exception associated with event, or {@code null}
+	 */
+	public synchronized void add(TrackingEvent event, Throwable ex) {
+		long time = event.getOperation().getStartTime().getTimeUsec();
+		if (count == 0 || time < firstTime) {
+			firstTime = time;
+		}
+		if (time > lastTime) {
+			lastTime = time;
+		}
+		count++;
+		OpLevel severity = event.getSeverity();
+		if (severity.ordinal() > maxSeverity.ordinal()) {
+			maxSeverity = severity;
+		}
+		if (exception == null) {
+			exception = ex;
+		}
+	}
+
+	/**
+	 * Returns number of streamed child events.
+	 *
+	 * @return number of child events
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns maximum severity of streamed child events.
+	 *
+	 * @return maximum child event severity, {@link OpLevel#NONE} - if no events were streamed
+	 */
+	public synchronized OpLevel getMaxSeverity() {
+		return maxSeverity;
+	}
+
+	/**
+	 * Checks whether any of streamed child events had exception.
+	 *
+	 * @return {@code true} if any child event had exception, {@code false} - otherwise
+	 */
+	public synchronized boolean isException() {
+		return exception != null;
+	}
+
+	/**
+	 * Returns exception of the first streamed child event having exception.
+	 *
+	 * @return first child event exception, or {@code null} if no child event had exception
+	 */
+	public synchronized Throwable getException() {
+		return exception;
+	}
+
+	/**
+	 * Builds snapshot of activity aggregates.
+	 *
+	 * @param logger
+	 *            tracking logger used to create snapshot
+	 * @param category
+	 *            snapshot category
+	 * @return activity aggregates snapshot
+	 */
+	public synchronized Snapshot toSnapshot(TrackingLogger logger, String category) {
+		Snapshot snapshot = logger.newSnapshot(category, SNAPSHOT_NAME, maxSeverity);
+		snapshot.add("event.count", count, ValueTypes.VALUE_TYPE_COUNTER);
+		snapshot.add("event.first.time", firstTime, ValueTypes.VALUE_TYPE_TIMESTAMP);
+		snapshot.add("event.last.time", lastTime, ValueTypes.VALUE_TYPE_TIMESTAMP);
+		snapshot.add("event.max.severity", maxSeverity.name());
+		snapshot.add("event.exception", exception != null, ValueTypes.VALUE_TYPE_FLAG);
+		return snapshot;
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+/**
+ * Tunes batch size and linger time of a sink flush stage using additive increase / multiplicative decrease (AIMD),
+ * within configured bounds. After every sent batch, controller is fed with batch size, time taken to send and flush it
+ * and remaining queue depth:
+ * <ul>
+ * <li>send latency above target - batch size is halved, so slow sink gets smaller batches and latency stays
+ * bounded;</li>
+ * <li>backlog (queue depth reaches batch size) - batch size grows by increment and linger is halved, since items are
+ * waiting anyway;</li>
+ * <li>full batch sent within target latency - batch size grows by increment, since synchronous loggers send batch as
+ * soon as it fills up and never build a backlog;</li>
+ * <li>light traffic (batch less than half full) - linger is halved, so items are not held for nothing;</li>
+ * <li>otherwise - linger grows by increment, coalescing more items per flush.</li>
+ * </ul>
+ * Updates are serialized, so controller may be fed by several flushing threads, while current values may be read by
+ * any thread without locking.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.DestinationWorker
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager
+ */
+public class AdaptiveBatch {
+	private final int minBatchSize;
+	private final int maxBatchSize;
+	private final long minLingerNanos;
+	private final long maxLingerNanos;
+	private final long targetLatencyNanos;
+	private final int batchIncrement;
+	private final long lingerIncrement;
+
+	private volatile int batchSize;
+	private volatile long lingerNanos;
+	private volatile long lastLatencyNanos;
+
+	/**
+	 * Constructs a new adaptive batch controller.
+	 *
+	 * @param minBatchSize
+	 *            minimal batch size
+	 * @param maxBatchSize
+	 *            maximal batch size
+	 * @param minLingerNanos
+	 *            minimal linger time, in nanoseconds
+	 * @param maxLingerNanos
+	 *            maximal linger time, in nanoseconds
+	 * @param targetLatencyNanos
+	 *            target time to send and flush single batch, in nanoseconds
+	 */
+	public AdaptiveBatch(int minBatchSize, int maxBatchSize, long minLingerNanos, long maxLingerNanos,
+			long targetLatencyNanos) {
+		this.minBatchSize = Math.max(1, minBatchSize);
+		this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+		this.minLingerNanos = Math.max(0, minLingerNanos);
+		this.maxLingerNanos = Math.max(this.minLingerNanos, maxLingerNanos);
+		this.targetLatencyNanos = targetLatencyNanos;
+		this.batchIncrement = Math.max(1, this.maxBatchSize / 32);
+		this.lingerIncrement = Math.max(1, (this.maxLingerNanos - this.minLingerNanos) / 32);
+
+		this.batchSize = this.minBatchSize;
+		this.lingerNanos = this.maxLingerNanos;
+	}
+
+	/**
+	 * Adjusts batch size and linger time using observation of last sent batch.
+	 *
+	 * @param sent
+	 *            number of items in sent batch
+	 * @param latencyNanos
+	 *            time taken to send and flush batch, in nanoseconds
+	 * @param queueDepth
+	 *            number of items still queued
+	 */
+	public synchronized void update(int sent, long latencyNanos, int queueDepth) {
+		lastLatencyNanos = latencyNanos;
+		int size = batchSize;
+		long linger = lingerNanos;
+		if (latencyNanos > targetLatencyNanos) {
+			size = Math.max(minBatchSize, size >> 1);
+		} else if (queueDepth >= size) {
+			size = Math.min(maxBatchSize, size + batchIncrement);
+			linger = Math.max(minLingerNanos, linger >> 1);
+		} else if (sent >= size) {
+			size = Math.min(maxBatchSize, size + batchIncrement);
+		} else if (sent < (size >> 1)) {
+			linger = Math.max(minLingerNanos, linger >> 1);
+		} else {
+			linger = Math.min(maxLingerNanos, linger + lingerIncrement);
+		}
+		batchSize = size;
+		lingerNanos = linger;
+	}
+
+	/**
+	 * Returns current batch size.
+	 *
+	 * @return current batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Returns current linger time: maximum time to wait for batch to fill up.
+	 *
+	 * @return current linger time, in nanoseconds
+	 */
+	public long getLingerNanos() {
+		return lingerNanos;
+	}
+
+	/**
+	 * Returns time taken to send and flush last batch.
+	 *
+	 * @return last batch latency, in nanoseconds
+	 */
+	public long getLastLatencyNanos() {
+		return lastLatencyNanos;
+	}
+
+	/**
+	 * Returns maximal batch size.
+	 *
+	 * @return maximal batch size
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Returns maximal linger time.
+	 *
+	 * @return maximal linger time, in nanoseconds
+	 */
+	public long getMaxLingerNanos() {
+		return maxLingerNanos;
+	}
+
+	/**
+	 * Returns target time to send and flush single batch.
+	 *
+	 * @return target batch latency, in nanoseconds
+	 */
+	public long getTargetLatencyNanos() {
+		return targetLatencyNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptiveBatch{" //
+				+ "batchSize=" + batchSize //
+				+ ", lingerNanos=" + lingerNanos //
+				+ ", lastLatencyNanos=" + lastLatencyNanos //
+				+ "}";
+	}
+}
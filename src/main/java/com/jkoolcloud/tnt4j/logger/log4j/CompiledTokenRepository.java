@@ -0,0 +1,332 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.jkoolcloud.tnt4j.config.ConfigException;
+import com.jkoolcloud.tnt4j.config.Configurable;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.repository.TokenRepository;
+import com.jkoolcloud.tnt4j.repository.TokenRepositoryEvent;
+import com.jkoolcloud.tnt4j.repository.TokenRepositoryListener;
+import com.jkoolcloud.tnt4j.sink.DefaultEventSinkFactory;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * Token repository compiling token properties file into an immutable {@link TokenTrie}. Token lookups take O(depth)
+ * steps over dotted key segments and require no locking. Repository file is watched using {@link WatchService} on a
+ * background thread: when file changes, it is compiled into new trie, which atomically replaces current one and
+ * {@link TokenRepository#EVENT_RELOAD} is delivered to registered listeners.
+ * <p>
+ * Repository can be used in place of {@code com.jkoolcloud.tnt4j.repository.FileTokenRepository}:
+ *
+ * <pre>
+ * tracking.selector: com.jkoolcloud.tnt4j.selector.DefaultTrackingSelector
+ * tracking.selector.Repository: com.jkoolcloud.tnt4j.logger.log4j.CompiledTokenRepository
+ * tracking.selector.Repository.Url: config/tnt4j-tokens.properties
+ * tracking.selector.Repository.PrefixMatch: true
+ * </pre>
+ *
+ * <table>
+ * <caption>Configuration properties</caption>
+ * <tr>
+ * <th nowrap="nowrap">Property name</th>
+ * <th>Required</th>
+ * <th>Description</th>
+ * </tr>
+ * <tr>
+ * <td>Url</td>
+ * <td>No</td>
+ * <td>Token properties file path or {@code file:} URL. Default value is {@code tnt4j.token.repository} system property
+ * value.</td>
+ * </tr>
+ * <tr>
+ * <td>PrefixMatch</td>
+ * <td>No</td>
+ * <td>When {@code true}, undefined key resolves to token of its longest defined dotted prefix (e.g.
+ * {@code com.myco.service.Api} resolves to {@code com.myco} token). Default value is {@code false}.</td>
+ * </tr>
+ * </table>
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TokenTrie
+ */
+public class CompiledTokenRepository implements TokenRepository, Configurable {
+	private static final EventSink logger = DefaultEventSinkFactory.defaultEventSink(CompiledTokenRepository.class);
+
+	/**
+	 * System property defining default token repository file
+	 */
+	public static final String DEFAULT_REPOSITORY_PROP = "tnt4j.token.repository";
+
+	private final List<TokenRepositoryListener> listeners = new CopyOnWriteArrayList<>();
+
+	private String url;
+	private boolean prefixMatch;
+	private Map<String, ?> settings;
+
+	private volatile TokenTrie<Object> tokens = TokenTrie.empty();
+	private Path path;
+	private long lastModified = -1;
+	private WatchService watchService;
+	private Thread watcher;
+
+	/**
+	 * Create repository using {@code tnt4j.token.repository} system property defined file.
+	 */
+	public CompiledTokenRepository() {
+		this(System.getProperty(DEFAULT_REPOSITORY_PROP), false);
+	}
+
+	/**
+	 * Create repository using given tokens file.
+	 *
+	 * @param url
+	 *            token properties file path or {@code file:} URL
+	 * @param prefixMatch
+	 *            flag indicating whether undefined keys resolve to their longest defined dotted prefix token
+	 */
+	public CompiledTokenRepository(String url, boolean prefixMatch) {
+		this.url = url;
+		this.prefixMatch = prefixMatch;
+	}
+
+	@Override
+	public boolean isDefined() {
+		return !Utils.isEmpty(url);
+	}
+
+	@Override
+	public String getName() {
+		return url;
+	}
+
+	@Override
+	public Object get(String key) {
+		TokenTrie<Object> current = tokens;
+		return prefixMatch ? current.getNearest(key) : current.get(key);
+	}
+
+	/**
+	 * Returns token defined for longest dotted prefix of given key, regardless of {@code PrefixMatch} setting.
+	 *
+	 * @param key
+	 *            token key
+	 * @return nearest token value, or {@code null} if neither key nor any of its prefixes is defined
+	 */
+	public Object getNearest(String key) {
+		return tokens.getNearest(key);
+	}
+
+	/**
+	 * Returns currently compiled tokens snapshot.
+	 *
+	 * @return compiled tokens trie
+	 */
+	public TokenTrie<Object> getTokens() {
+		return tokens;
+	}
+
+	@Override
+	public Iterator<? extends Object> getKeys() {
+		return tokens.keys().iterator();
+	}
+
+	@Override
+	public synchronized void set(String key, Object value) {
+		Map<String, Object> newTokens = toMap(tokens);
+		newTokens.put(key, value);
+		tokens = TokenTrie.compile(newTokens);
+		notifyListeners(EVENT_SET_KEY, key, value, null);
+	}
+
+	@Override
+	public synchronized void remove(String key) {
+		Map<String, Object> newTokens = toMap(tokens);
+		Object value = newTokens.remove(key);
+		tokens = TokenTrie.compile(newTokens);
+		notifyListeners(EVENT_CLEAR_KEY, key, value, null);
+	}
+
+	@Override
+	public void addRepositoryListener(TokenRepositoryListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeRepositoryListener(TokenRepositoryListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public synchronized boolean isOpen() {
+		return path != null;
+	}
+
+	@Override
+	public synchronized void open() throws IOException {
+		if (isOpen() || !isDefined()) {
+			return;
+		}
+		path = toPath(url);
+		reload();
+
+		Path dir = path.toAbsolutePath().getParent();
+		if (dir != null && Files.isDirectory(dir)) {
+			watchService = dir.getFileSystem().newWatchService();
+			dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			watcher = new Thread(this::watch, "TNT4J-token-watch-" + path.getFileName());
+			watcher.setDaemon(true);
+			watcher.start();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		Utils.close(watchService);
+		if (watcher != null) {
+			watcher.interrupt();
+		}
+		watchService = null;
+		watcher = null;
+		path = null;
+		lastModified = -1;
+	}
+
+	/**
+	 * Compiles repository file into new tokens trie and atomically replaces current one, if file has been modified
+	 * since last compilation.
+	 */
+	protected synchronized void reload() {
+		if (path == null) {
+			return;
+		}
+		try {
+			long modified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : 0;
+			if (modified == lastModified) {
+				return;
+			}
+			Properties props = new Properties();
+			if (modified != 0) {
+				try (InputStream is = Files.newInputStream(path)) {
+					props.load(is);
+				}
+			}
+			Map<String, Object> newTokens = new LinkedHashMap<>(props.size());
+			for (String key : props.stringPropertyNames()) {
+				newTokens.put(key, props.getProperty(key).trim());
+			}
+			tokens = TokenTrie.compile(newTokens);
+			lastModified = modified;
+			notifyListeners(EVENT_RELOAD, url, null, null);
+		} catch (IOException exc) {
+			logger.log(OpLevel.ERROR, "Unable to load token repository={0}", url, exc);
+			notifyListeners(EVENT_EXCEPTION, url, null, exc);
+		}
+	}
+
+	private void watch() {
+		WatchService ws;
+		Path fileName;
+		synchronized (this) {
+			ws = watchService;
+			fileName = path == null ? null : path.getFileName();
+		}
+		if (ws == null || fileName == null) {
+			return;
+		}
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				WatchKey key = ws.take();
+				boolean changed = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+						changed = true;
+					}
+				}
+				if (changed) {
+					reload();
+				}
+				if (!key.reset()) {
+					break;
+				}
+			}
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException exc) {
+			// repository closed
+		}
+	}
+
+	private void notifyListeners(int type, Object key, Object value, Throwable ex) {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		TokenRepositoryEvent event = new TokenRepositoryEvent(this, type, key, value, ex);
+		for (TokenRepositoryListener listener : listeners) {
+			if (type == EVENT_EXCEPTION) {
+				listener.repositoryError(event);
+			} else {
+				listener.repositoryChanged(event);
+			}
+		}
+	}
+
+	private static Map<String, Object> toMap(TokenTrie<Object> trie) {
+		Map<String, Object> map = new LinkedHashMap<>(trie.size() + 1);
+		for (String key : trie.keys()) {
+			map.put(key, trie.get(key));
+		}
+		return map;
+	}
+
+	private static Path toPath(String url) {
+		if (url.regionMatches(true, 0, "file:", 0, 5)) {
+			try {
+				return Paths.get(URI.create(url));
+			} catch (IllegalArgumentException exc) {
+				return Paths.get(url.substring(5));
+			}
+		}
+		return Paths.get(url);
+	}
+
+	@Override
+	public Map<String, ?> getConfiguration() {
+		return settings;
+	}
+
+	@Override
+	public void setConfiguration(Map<String, ?> settings) throws ConfigException {
+		this.settings = settings;
+		url = Utils.getString("Url", settings, System.getProperty(DEFAULT_REPOSITORY_PROP));
+		prefixMatch = Utils.getBoolean("PrefixMatch", settings, false);
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + "{url: " + url + ", prefixMatch: " + prefixMatch + ", tokens: " + tokens.size() + "}";
+	}
+}
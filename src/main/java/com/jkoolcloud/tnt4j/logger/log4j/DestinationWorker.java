@@ -0,0 +1,243 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.jkoolcloud.tnt4j.TrackingLogger;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.core.Trackable;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Sends tracking items to single {@link TNT4JDestination} tracker on a background thread. Logging thread only queues
+ * items into destination bounded {@link LaneQueue} ({@code ERROR} and more severe items use urgent lane), worker
+ * thread sends them in batches of at most destination batch size, waiting at most linger time for batch to fill up,
+ * and flushes tracker sink after every batch. When destination has adaptive batching enabled, batch size and linger
+ * time are tuned by {@link AdaptiveBatch} using measured batch send latency and queue depth. Batch is considered
+ * failed if sending throws or sink error count grows while sending. Sending stops at first failed item: items accepted
+ * by sink before it count as sent, failed and remaining items are dropped or retried as defined by destination
+ * {@link TNT4JDestination.FailurePolicy}. Failed sink flush fails whole batch, since items buffered by sink may be
+ * lost, so retried batch items may then be sent twice.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager
+ */
+public class DestinationWorker {
+	private final TNT4JDestination destination;
+	private final TrackingLogger logger;
+	private final LaneQueue queue;
+	private final AdaptiveBatch batching;
+	private final Thread worker;
+	private volatile boolean running = true;
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	/**
+	 * Constructs and starts a new destination worker.
+	 *
+	 * @param destination
+	 *            destination definition
+	 * @param logger
+	 *            opened destination tracker
+	 */
+	public DestinationWorker(TNT4JDestination destination, TrackingLogger logger) {
+		this.destination = destination;
+		this.logger = logger;
+		this.queue = new LaneQueue(destination.getQueueCapacity(), destination.getDropPolicy());
+		long lingerNanos = TimeUnit.MILLISECONDS.toNanos(destination.getLingerMillis());
+		this.batching = destination.isAdaptiveBatch()
+				? new AdaptiveBatch(1, destination.getMaxBatchSize(), TimeUnit.MILLISECONDS.toNanos(1), lingerNanos,
+						TimeUnit.MILLISECONDS.toNanos(destination.getTargetLatencyMillis()))
+				: new AdaptiveBatch(destination.getBatchSize(), destination.getBatchSize(), lingerNanos, lingerNanos,
+						Long.MAX_VALUE);
+
+		worker = new Thread(this::run, "TNT4J-dest-" + destination.getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Queues tracking item to be sent to destination. Worker is woken up when batch is full or item is {@code ERROR}
+	 * or more severe.
+	 *
+	 * @param item
+	 *            tracking item
+	 * @param severity
+	 *            item severity
+	 * @return {@code true} if item was queued, {@code false} - if item was dropped
+	 */
+	public boolean offer(Trackable item, OpLevel severity) {
+		boolean queued = queue.offer(item, severity);
+		if (LaneQueue.isUrgent(severity) || queue.size() >= batching.getBatchSize()) {
+			LockSupport.unpark(worker);
+		}
+		return queued;
+	}
+
+	/**
+	 * Stops worker thread, waiting at most given time for queued items to be sent, and closes destination tracker.
+	 *
+	 * @param timeoutMillis
+	 *            maximum time to wait, in milliseconds, {@code 0} - no limit
+	 * @return {@code true} if all queued items were sent, {@code false} - otherwise
+	 */
+	public boolean stop(long timeoutMillis) {
+		running = false;
+		LockSupport.unpark(worker);
+		try {
+			worker.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		boolean done = !worker.isAlive();
+		if (done) {
+			logger.close();
+		}
+		return done;
+	}
+
+	private void run() {
+		List<Trackable> batch = new ArrayList<>();
+		while (running || queue.size() > 0 || !batch.isEmpty()) {
+			if (batch.isEmpty()) {
+				if (running && queue.size() < batching.getBatchSize()) {
+					LockSupport.parkNanos(this, batching.getLingerNanos());
+				}
+				queue.drain(batch::add, batching.getBatchSize());
+				if (batch.isEmpty()) {
+					continue;
+				}
+			}
+			long start = System.nanoTime();
+			Object jfr = JfrEvents.begin(JfrEvents.Stage.SINK_SEND);
+			int accepted = sendBatch(batch);
+			boolean ok = accepted == batch.size();
+			if (jfr != null) {
+				JfrEvents.commit(jfr, destination.getName(), (ok ? OpLevel.INFO : OpLevel.ERROR).name(),
+						batch.size());
+			}
+			sent.addAndGet(accepted);
+			if (ok) {
+				batching.update(batch.size(), System.nanoTime() - start, queue.size());
+				batch.clear();
+			} else {
+				// items accepted by sink are not sent again
+				batch.subList(0, accepted).clear();
+				failed.addAndGet(batch.size());
+				if (destination.getFailurePolicy() == TNT4JDestination.FailurePolicy.RETRY && running) {
+					LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(destination.getRetryMillis()));
+				} else {
+					batch.clear();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends batch items in order, stopping at first item failing to send, and flushes tracker sink.
+	 *
+	 * @param batch
+	 *            items to send
+	 * @return number of leading batch items accepted by sink, {@code 0} if sink flush failed
+	 */
+	private int sendBatch(List<Trackable> batch) {
+		EventSink sink = logger.getEventSink();
+		long errors = sink.getErrorCount();
+		int accepted = 0;
+		try {
+			for (Trackable item : batch) {
+				if (item instanceof TrackingActivity) {
+					logger.tnt((TrackingActivity) item);
+				} else if (item instanceof TrackingEvent) {
+					logger.tnt((TrackingEvent) item);
+				} else if (item instanceof Snapshot) {
+					logger.tnt((Snapshot) item);
+				}
+				if (sink.getErrorCount() != errors) {
+					break;
+				}
+				accepted++;
+			}
+		} catch (Throwable e) {
+			sink.setErrorState(e);
+		}
+		errors = sink.getErrorCount();
+		try {
+			sink.flush();
+		} catch (Throwable e) {
+			sink.setErrorState(e);
+			return 0;
+		}
+		return sink.getErrorCount() == errors ? accepted : 0;
+	}
+
+	/**
+	 * Returns destination definition.
+	 *
+	 * @return destination definition
+	 */
+	public TNT4JDestination getDestination() {
+		return destination;
+	}
+
+	/**
+	 * Returns destination queue, providing per lane depth, drop counts and queueing latency.
+	 *
+	 * @return destination queue
+	 */
+	public LaneQueue getQueue() {
+		return queue;
+	}
+
+	/**
+	 * Returns batch size and linger time controller of this destination, providing current batch size, linger time and
+	 * last batch latency.
+	 *
+	 * @return batching controller
+	 */
+	public AdaptiveBatch getBatching() {
+		return batching;
+	}
+
+	/**
+	 * Returns number of items sent to destination.
+	 *
+	 * @return number of sent items
+	 */
+	public long getSentCount() {
+		return sent.get();
+	}
+
+	/**
+	 * Returns number of items destination failed to send (retried items are counted every time they fail).
+	 *
+	 * @return number of failed items
+	 */
+	public long getFailedCount() {
+		return failed.get();
+	}
+}
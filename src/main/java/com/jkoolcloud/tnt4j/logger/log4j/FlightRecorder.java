@@ -0,0 +1,364 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.LogEvent;
+
+/**
+ * Keeps last N low severity ({@code DEBUG} and {@code TRACE}) log4j events per thread, or per correlator defined by
+ * {@code ThreadContext} key, in bounded rings of compact records. Recorded events are not shipped anywhere, unless
+ * error event occurs: then ring of that thread (correlator) is drained and dropped, so that pre-failure context can be
+ * reported along with the error.
+ * <p>
+ * Ring records are allocated as ring fills up, so rings of threads (correlators) logging a few events stay small. Total
+ * number of rings and records is bounded: when either limit is exceeded, least recently used rings are evicted.
+ * <p>
+ * Threads are identified by log4j event thread id, so events are kept per logging thread even when appender is
+ * invoked by async logger or {@code AsyncAppender} background thread.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager
+ */
+public class FlightRecorder {
+	/**
+	 * Maximum number of thread and correlator rings kept, least recently used rings are evicted over this limit
+	 */
+	public static final int MAX_KEYED_RINGS = 10_000;
+	/**
+	 * Default maximum number of records kept by all rings
+	 */
+	public static final int DEFAULT_MAX_RECORDS = 100_000;
+
+	private final int capacity;
+	private final String contextKey;
+	private final int maxRecords;
+	private final Map<Object, Ring> rings = new ConcurrentHashMap<>();
+	private final AtomicInteger recordCount = new AtomicInteger();
+	private final Object evictLock = new Object();
+
+	/**
+	 * Constructs a new flight recorder, keeping up to {@link #DEFAULT_MAX_RECORDS} records.
+	 *
+	 * @param capacity
+	 *            number of events kept per thread (correlator)
+	 * @param contextKey
+	 *            {@code ThreadContext} key of correlator to keep events per correlator, {@code null} - keep events per
+	 *            thread only
+	 */
+	public FlightRecorder(int capacity, String contextKey) {
+		this(capacity, contextKey, DEFAULT_MAX_RECORDS);
+	}
+
+	/**
+	 * Constructs a new flight recorder.
+	 *
+	 * @param capacity
+	 *            number of events kept per thread (correlator)
+	 * @param contextKey
+	 *            {@code ThreadContext} key of correlator to keep events per correlator, {@code null} - keep events per
+	 *            thread only
+	 * @param maxRecords
+	 *            maximum number of records kept by all rings
+	 */
+	public FlightRecorder(int capacity, String contextKey, int maxRecords) {
+		this.capacity = capacity;
+		this.contextKey = contextKey;
+		this.maxRecords = Math.max(capacity, maxRecords);
+	}
+
+	/**
+	 * Returns number of events kept per thread (correlator).
+	 *
+	 * @return ring capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns {@code ThreadContext} key of correlator events are kept by.
+	 *
+	 * @return correlator key, {@code null} - events are kept per thread
+	 */
+	public String getContextKey() {
+		return contextKey;
+	}
+
+	/**
+	 * Returns number of thread (correlator) rings currently kept.
+	 *
+	 * @return number of rings
+	 */
+	public int getRingCount() {
+		return rings.size();
+	}
+
+	/**
+	 * Returns number of records currently allocated by all rings.
+	 *
+	 * @return number of records
+	 */
+	public int getRecordCount() {
+		return recordCount.get();
+	}
+
+	/**
+	 * Checks whether given log4j event is of low severity and shall be recorded instead of being shipped.
+	 *
+	 * @param event
+	 *            log4j logging event
+	 * @return {@code true} if event is recorded, {@code false} - otherwise
+	 */
+	public static boolean isRecordable(LogEvent event) {
+		return event.getLevel().isLessSpecificThan(Level.DEBUG);
+	}
+
+	/**
+	 * Checks whether given log4j event triggers recorded events flush: it is {@code ERROR} or more severe, or has
+	 * throwable.
+	 *
+	 * @param event
+	 *            log4j logging event
+	 * @return {@code true} if recorded events shall be flushed, {@code false} - otherwise
+	 */
+	public static boolean isTrigger(LogEvent event) {
+		return event.getLevel().isMoreSpecificThan(Level.ERROR) || event.getThrown() != null;
+	}
+
+	/**
+	 * Records given log4j event, overwriting the oldest one when ring is full.
+	 *
+	 * @param event
+	 *            log4j logging event
+	 * @param message
+	 *            formatted event message
+	 * @param attrs
+	 *            attributes parsed from event message
+	 * @param ex
+	 *            exception associated with event, or {@code null}
+	 * @param elapsedTimeUsec
+	 *            time elapsed since previous event of the same thread, in microseconds
+	 */
+	public void record(LogEvent event, String message, Map<String, String> attrs, Throwable ex,
+			long elapsedTimeUsec) {
+		Object key = getKey(event);
+		Ring ring = rings.computeIfAbsent(key, k -> new Ring(k, capacity));
+		while (!ring.add(event, message, attrs, ex, elapsedTimeUsec, recordCount)) {
+			// ring drained or evicted meanwhile, record goes to a new one
+			rings.remove(key, ring);
+			ring = rings.computeIfAbsent(key, k -> new Ring(k, capacity));
+		}
+		if (rings.size() > MAX_KEYED_RINGS || recordCount.get() > maxRecords) {
+			evict();
+		}
+	}
+
+	/**
+	 * Drains events recorded for the same thread (correlator) as given event, passing them oldest first to the
+	 * consumer. Drained ring is dropped, so passed records must not be kept by consumer.
+	 *
+	 * @param event
+	 *            log4j event triggering recorded events flush
+	 * @param consumer
+	 *            recorded events consumer
+	 * @return number of drained events
+	 */
+	public int drain(LogEvent event, Consumer<Record> consumer) {
+		Ring ring = rings.get(getKey(event));
+		if (ring == null) {
+			return 0;
+		}
+		try {
+			return ring.drain(consumer, recordCount);
+		} finally {
+			rings.remove(ring.key, ring);
+		}
+	}
+
+	private Object getKey(LogEvent event) {
+		Object key = contextKey == null ? null : event.getContextData().getValue(contextKey);
+		return key == null ? event.getThreadId() : key;
+	}
+
+	/**
+	 * Evicts least recently used rings until ring and record counts drop to 3/4 of their limits, so that rings are not
+	 * scanned again on every new record.
+	 */
+	private void evict() {
+		synchronized (evictLock) {
+			if (rings.size() <= MAX_KEYED_RINGS && recordCount.get() <= maxRecords) {
+				return;
+			}
+			List<Ring> lru = new ArrayList<>(rings.values());
+			lru.sort(Comparator.comparingLong(r -> r.lastUsed));
+			int ringCount = lru.size();
+			for (Ring ring : lru) {
+				if (ringCount <= MAX_KEYED_RINGS / 4 * 3 && recordCount.get() <= maxRecords / 4 * 3) {
+					break;
+				}
+				if (rings.remove(ring.key, ring)) {
+					ring.retire(recordCount);
+					ringCount--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compact recorded log4j event.
+	 */
+	public static final class Record {
+		private long timeUsec;
+		private long elapsedTimeUsec;
+		private Level level;
+		private Marker marker;
+		private String loggerName;
+		private String threadName;
+		private String message;
+		private Map<String, String> attrs;
+		private Throwable thrown;
+
+		public long getTimeMillis() {
+			return timeUsec / 1_000;
+		}
+
+		public long getTimeUsec() {
+			return timeUsec;
+		}
+
+		public long getElapsedTimeUsec() {
+			return elapsedTimeUsec;
+		}
+
+		public Level getLevel() {
+			return level;
+		}
+
+		public Marker getMarker() {
+			return marker;
+		}
+
+		public String getLoggerName() {
+			return loggerName;
+		}
+
+		public String getThreadName() {
+			return threadName;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public Map<String, String> getAttributes() {
+			return attrs;
+		}
+
+		public Throwable getThrown() {
+			return thrown;
+		}
+
+		private void set(LogEvent event, String msg, Map<String, String> attributes, Throwable ex, long elapsed) {
+			timeUsec = TNT4JManager.getTimeUsec(event);
+			elapsedTimeUsec = elapsed;
+			level = event.getLevel();
+			marker = event.getMarker();
+			loggerName = event.getLoggerName();
+			threadName = event.getThreadName();
+			message = msg;
+			attrs = attributes;
+			thrown = ex;
+		}
+	}
+
+	private static final class Ring {
+		private static final int INITIAL_CAPACITY = 8;
+
+		private final Object key;
+		private final int capacity;
+		private Record[] records;
+		private int head;
+		private int size;
+		private boolean retired;
+		private volatile long lastUsed;
+
+		private Ring(Object key, int capacity) {
+			this.key = key;
+			this.capacity = capacity;
+		}
+
+		private synchronized boolean add(LogEvent event, String message, Map<String, String> attrs, Throwable ex,
+				long elapsedTimeUsec, AtomicInteger recordCount) {
+			if (retired) {
+				return false;
+			}
+			lastUsed = System.nanoTime();
+			if (records == null) {
+				records = new Record[Math.min(capacity, INITIAL_CAPACITY)];
+			} else if (size == records.length && size < capacity) {
+				// ring is not full yet, so head is still at 0
+				records = Arrays.copyOf(records, Math.min(capacity, size << 1));
+			}
+			int idx = (head + size) % records.length;
+			Record rec = records[idx];
+			if (rec == null) {
+				rec = records[idx] = new Record();
+				recordCount.incrementAndGet();
+			}
+			rec.set(event, message, attrs, ex, elapsedTimeUsec);
+			if (size < records.length) {
+				size++;
+			} else {
+				head = (head + 1) % records.length;
+			}
+			return true;
+		}
+
+		private synchronized int drain(Consumer<Record> consumer, AtomicInteger recordCount) {
+			int drained = size;
+			try {
+				for (int i = 0; i < drained; i++) {
+					consumer.accept(records[(head + i) % records.length]);
+				}
+			} finally {
+				// records added after drain go to a new ring
+				retire(recordCount);
+			}
+			return drained;
+		}
+
+		private synchronized void retire(AtomicInteger recordCount) {
+			if (retired) {
+				return;
+			}
+			retired = true;
+			// ring is filled in order and records are never released before, so each slot in use has own record
+			recordCount.addAndGet(-size);
+			records = null;
+			head = 0;
+			size = 0;
+		}
+	}
+}
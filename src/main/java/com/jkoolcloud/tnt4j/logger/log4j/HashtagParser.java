@@ -0,0 +1,366 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded parser of hashtag annotated log messages, e.g. {@code "Operation failed #opn=save #rsn=file.txt"}. Parses
+ * messages same way as {@link com.jkoolcloud.tnt4j.logger.AppenderTools#parseEventMessage(Map, String, char)}, but
+ * enforces limits while parsing:
+ * <ul>
+ * <li>number of attributes per message - attributes over the limit are skipped, except reserved ones (e.g. activity
+ * and event field hashtags);</li>
+ * <li>key length and value length - longer keys and values are truncated.</li>
+ * </ul>
+ * Attribute bounds are found by scanning message in place and values are handled as {@link CharSequence} views of the
+ * message, so only truncated (bounded) part of an oversized key or value is ever copied. Keys of attributes over the
+ * limit are copied only as far as needed to tell whether they are reserved. When any attribute is skipped or
+ * truncated, {@link #OVERFLOW_KEY} attribute is added, containing number of affected attributes.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager
+ */
+public class HashtagParser {
+	/**
+	 * Name of attribute added when some message attributes are skipped or truncated
+	 */
+	public static final String OVERFLOW_KEY = "attrs.overflow";
+
+	private final int maxAttributes;
+	private final int maxKeyLength;
+	private final int maxValueLength;
+	private final int maxReservedLength;
+	private final Set<String> reserved = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+	private final LongAdder truncated = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+
+	/**
+	 * Constructs a new hashtag parser.
+	 *
+	 * @param maxAttributes
+	 *            maximum number of non reserved attributes per message, {@code 0} - unlimited
+	 * @param maxKeyLength
+	 *            maximum attribute key length, {@code 0} - unlimited
+	 * @param maxValueLength
+	 *            maximum attribute value length, {@code 0} - unlimited
+	 * @param reservedKeys
+	 *            keys (case insensitive) never skipped and not counted by attributes limit
+	 */
+	public HashtagParser(int maxAttributes, int maxKeyLength, int maxValueLength, String... reservedKeys) {
+		this(maxAttributes, maxKeyLength, maxValueLength, Arrays.asList(reservedKeys));
+	}
+
+	/**
+	 * Constructs a new hashtag parser.
+	 *
+	 * @param maxAttributes
+	 *            maximum number of non reserved attributes per message, {@code 0} - unlimited
+	 * @param maxKeyLength
+	 *            maximum attribute key length, {@code 0} - unlimited
+	 * @param maxValueLength
+	 *            maximum attribute value length, {@code 0} - unlimited
+	 * @param reservedKeys
+	 *            keys (case insensitive) never skipped and not counted by attributes limit
+	 */
+	public HashtagParser(int maxAttributes, int maxKeyLength, int maxValueLength, Collection<String> reservedKeys) {
+		this.maxAttributes = toLimit(maxAttributes);
+		this.maxKeyLength = toLimit(maxKeyLength);
+		this.maxValueLength = toLimit(maxValueLength);
+		this.reserved.addAll(reservedKeys);
+		this.maxReservedLength = reserved.stream().mapToInt(String::length).max().orElse(0);
+	}
+
+	private static int toLimit(int limit) {
+		return limit > 0 ? limit : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Checks whether this parser enforces given limits.
+	 *
+	 * @param maxAttributes
+	 *            maximum number of non reserved attributes per message, {@code 0} - unlimited
+	 * @param maxKeyLength
+	 *            maximum attribute key length, {@code 0} - unlimited
+	 * @param maxValueLength
+	 *            maximum attribute value length, {@code 0} - unlimited
+	 * @return {@code true} if parser limits are the same as given ones, {@code false} - otherwise
+	 */
+	public boolean hasLimits(int maxAttributes, int maxKeyLength, int maxValueLength) {
+		return this.maxAttributes == toLimit(maxAttributes) && this.maxKeyLength == toLimit(maxKeyLength)
+				&& this.maxValueLength == toLimit(maxValueLength);
+	}
+
+	/**
+	 * Parses hashtag attributes of given message into provided map.
+	 *
+	 * @param attrs
+	 *            map to put parsed attributes into
+	 * @param msg
+	 *            message to parse
+	 * @param delim
+	 *            hashtag delimiter, e.g. {@code '#'}
+	 * @return number of skipped or truncated attributes
+	 */
+	public int parse(Map<String, String> attrs, String msg, char delim) {
+		int attrCount = 0;
+		int overflow = 0;
+		int len = msg.length();
+		int i = 0;
+		while (i < len) {
+			if (msg.charAt(i) != delim) {
+				i++;
+				continue;
+			}
+			int start = ++i;
+			int eq = -1;
+			int eq2 = -1;
+			boolean quoted = false;
+			for (; i < len; i++) {
+				char ch = msg.charAt(i);
+				if (ch == '=') {
+					if (eq < 0) {
+						eq = i;
+					} else if (eq2 < 0) {
+						eq2 = i;
+					}
+				} else if (ch == '\'' && eq >= 0) {
+					if (quoted) {
+						i++;
+						break;
+					}
+					quoted = true;
+				} else if (Character.isWhitespace(ch) && !quoted) {
+					break;
+				}
+			}
+			if (i <= start) {
+				continue;
+			}
+
+			// over the limit only reserved keys are of interest, so key is copied no further than longest reserved one
+			int keyBound = attrCount >= maxAttributes ? maxReservedLength : Math.max(maxKeyLength, maxReservedLength);
+			String key = toKey(msg, start, eq < 0 ? i : eq, keyBound);
+			boolean isReserved = key.length() <= maxReservedLength && reserved.contains(key);
+			if (!isReserved && attrCount >= maxAttributes) {
+				skipped.increment();
+				overflow++;
+				continue;
+			}
+			if (key.length() > maxKeyLength) {
+				key = key.substring(0, maxKeyLength);
+				truncated.increment();
+				overflow++;
+			}
+			// value ends at second '=' (if any), same as AppenderTools parsing
+			int vStart = eq < 0 ? i : eq + 1;
+			int vEnd = eq2 < 0 ? i : eq2;
+			CharSequence value = CharBuffer.wrap(msg, vStart, vEnd);
+			if (value.length() > 1 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'') {
+				value = unescape(value.subSequence(1, value.length() - 1), maxValueLength);
+			}
+			if (value.length() > maxValueLength) {
+				value = value.subSequence(0, maxValueLength);
+				truncated.increment();
+				overflow++;
+			}
+			attrs.put(key, value.toString());
+			if (!isReserved) {
+				attrCount++;
+			}
+		}
+		if (overflow > 0) {
+			attrs.put(OVERFLOW_KEY, String.valueOf(overflow));
+		}
+		return overflow;
+	}
+
+	/**
+	 * Extracts trimmed attribute key without quotes. Key is bounded: at most {@code maxLength + 1} characters are
+	 * copied, so caller can tell whether key is longer than given maximum length.
+	 *
+	 * @param msg
+	 *            message containing key
+	 * @param start
+	 *            key start index
+	 * @param end
+	 *            key end index
+	 * @param maxLength
+	 *            maximum key length
+	 * @return attribute key, longer than {@code maxLength} when key exceeds it
+	 */
+	private static String toKey(String msg, int start, int end, int maxLength) {
+		while (start < end && Character.isWhitespace(msg.charAt(start))) {
+			start++;
+		}
+		while (end > start && Character.isWhitespace(msg.charAt(end - 1))) {
+			end--;
+		}
+		int limit = (int) Math.min(end, (long) start + maxLength + 1);
+		int quote = start;
+		while (quote < limit && msg.charAt(quote) != '\'') {
+			quote++;
+		}
+		if (quote == limit) {
+			return msg.substring(start, limit);
+		}
+		StringBuilder sb = new StringBuilder(limit - start);
+		sb.append(msg, start, quote);
+		for (int i = quote; i < end && sb.length() <= maxLength; i++) {
+			char ch = msg.charAt(i);
+			if (ch != '\'') {
+				sb.append(ch);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Unescapes Java escape sequences of quoted value. Result is bounded: unescaping stops once result exceeds given
+	 * maximum length.
+	 *
+	 * @param value
+	 *            quoted value contents
+	 * @param maxLength
+	 *            maximum unescaped value length
+	 * @return unescaped value
+	 */
+	private static CharSequence unescape(CharSequence value, int maxLength) {
+		int len = value.length();
+		int idx = 0;
+		while (idx < len && value.charAt(idx) != '\\') {
+			idx++;
+		}
+		if (idx == len) {
+			return value;
+		}
+		StringBuilder sb = new StringBuilder(Math.min(len, maxLength == Integer.MAX_VALUE ? len : maxLength + 1));
+		sb.append(value, 0, idx);
+		for (int i = idx; i < len && sb.length() <= maxLength; i++) {
+			char ch = value.charAt(i);
+			if (ch != '\\') {
+				sb.append(ch);
+				continue;
+			}
+			if (i + 1 >= len) {
+				break;
+			}
+			char next = value.charAt(++i);
+			switch (next) {
+			case 'n':
+				sb.append('\n');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'u':
+				int end = i + 1;
+				while (end < len && value.charAt(end) == 'u') {
+					end++;
+				}
+				if (end + 4 <= len) {
+					try {
+						sb.append((char) Integer.parseInt(value.subSequence(end, end + 4).toString(), 16));
+						i = end + 3;
+						break;
+					} catch (NumberFormatException exc) {
+					}
+				}
+				sb.append('\\').append(next);
+				break;
+			default:
+				if (next >= '0' && next <= '7') {
+					int code = next - '0';
+					int digits = 1;
+					int maxDigits = next <= '3' ? 3 : 2;
+					while (digits < maxDigits && i + 1 < len && value.charAt(i + 1) >= '0'
+							&& value.charAt(i + 1) <= '7') {
+						code = code * 8 + (value.charAt(++i) - '0');
+						digits++;
+					}
+					sb.append((char) code);
+				} else {
+					// \\, \', \" and unknown escapes
+					sb.append(next);
+				}
+			}
+		}
+		return sb;
+	}
+
+	/**
+	 * Returns maximum number of non reserved attributes per message.
+	 *
+	 * @return maximum number of attributes, {@link Integer#MAX_VALUE} - unlimited
+	 */
+	public int getMaxAttributes() {
+		return maxAttributes;
+	}
+
+	/**
+	 * Returns maximum attribute key length.
+	 *
+	 * @return maximum key length, {@link Integer#MAX_VALUE} - unlimited
+	 */
+	public int getMaxKeyLength() {
+		return maxKeyLength;
+	}
+
+	/**
+	 * Returns maximum attribute value length.
+	 *
+	 * @return maximum value length, {@link Integer#MAX_VALUE} - unlimited
+	 */
+	public int getMaxValueLength() {
+		return maxValueLength;
+	}
+
+	/**
+	 * Returns total number of truncated keys and values.
+	 *
+	 * @return number of truncated keys and values
+	 */
+	public long getTruncatedCount() {
+		return truncated.sum();
+	}
+
+	/**
+	 * Returns total number of attributes skipped because of attributes limit.
+	 *
+	 * @return number of skipped attributes
+	 */
+	public long getSkippedCount() {
+		return skipped.sum();
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder (JFR) instrumentation of TNT4J appender processing stages. Every {@link Stage} is recorded as
+ * custom JFR event carrying logger name, level, payload size and stage duration. Events are enabled by default, so
+ * they are recorded by any JFR recording, and can be tuned or disabled in recording settings using event names
+ * {@code com.jkoolcloud.tnt4j.log4j.<stage>}.
+ * <p>
+ * When no recording is running, {@link #begin(Stage)} returns {@code null} after a single enabled check and no event
+ * object gets allocated. JFR classes are referenced only when module {@code jdk.jfr} is present at runtime, so on
+ * runtimes without it (or when system property {@value #ENABLED_PROPERTY} is set to {@code false}) instrumentation is
+ * turned off entirely.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * Object jfr = JfrEvents.begin(JfrEvents.Stage.PARSE);
+ * // stage processing
+ * if (jfr != null) {
+ * 	JfrEvents.commit(jfr, loggerName, levelName, size);
+ * }
+ * </pre>
+ *
+ * @version $Revision: 1 $
+ */
+public final class JfrEvents {
+	/**
+	 * System property to turn JFR instrumentation off, default is {@code true}
+	 */
+	public static final String ENABLED_PROPERTY = "tnt4j.log4j.jfr.events";
+
+	private static final boolean AVAILABLE = isJfrAvailable();
+
+	/**
+	 * Instrumented appender processing stages.
+	 */
+	public enum Stage {
+		/**
+		 * Log4j event received by appender, covers all processing of the event
+		 */
+		RECEIVE,
+		/**
+		 * Event message hashtag attributes parsed
+		 */
+		PARSE,
+		/**
+		 * TNT4J tracking event built from log4j event
+		 */
+		BUILD,
+		/**
+		 * Ended activity processed and flushed
+		 */
+		ACTIVITY_FLUSH,
+		/**
+		 * Metrics snapshot sampled and reported
+		 */
+		METRICS_SNAPSHOT,
+		/**
+		 * Tracking items sent to TNT4J tracker sink
+		 */
+		SINK_SEND
+	}
+
+	private JfrEvents() {
+	}
+
+	private static boolean isJfrAvailable() {
+		if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"))) {
+			return false;
+		}
+		try {
+			Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+			return true;
+		} catch (Throwable exc) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks whether JFR instrumentation is available in this runtime.
+	 *
+	 * @return {@code true} if JFR events can be recorded, {@code false} - otherwise
+	 */
+	public static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	/**
+	 * Starts timing of given processing stage.
+	 *
+	 * @param stage
+	 *            processing stage
+	 * @return stage event handle, or {@code null} if stage event is not enabled by any running recording
+	 */
+	public static Object begin(Stage stage) {
+		return AVAILABLE ? Events.begin(stage) : null;
+	}
+
+	/**
+	 * Ends timing of processing stage and commits stage event if it passes recording threshold.
+	 *
+	 * @param handle
+	 *            stage event handle returned by {@link #begin(Stage)}, {@code null} is ignored
+	 * @param loggerName
+	 *            logger (or tracking item resource) name
+	 * @param level
+	 *            event level name
+	 * @param size
+	 *            payload size: message length in characters, or number of tracking items or snapshot properties
+	 */
+	public static void commit(Object handle, String loggerName, String level, long size) {
+		if (handle != null) {
+			Events.commit(handle, loggerName, level, size);
+		}
+	}
+
+	/**
+	 * Holder of JFR dependent code, loaded only when JFR is available.
+	 */
+	private static final class Events {
+		// never committed instances used only for enabled checks, so disabled stages allocate nothing
+		private static final StageEvent[] PROBES = { new ReceiveEvent(), new ParseEvent(), new BuildEvent(),
+				new ActivityFlushEvent(), new MetricsSnapshotEvent(), new SinkSendEvent() };
+
+		private static Object begin(Stage stage) {
+			if (!PROBES[stage.ordinal()].isEnabled()) {
+				return null;
+			}
+			StageEvent event = newEvent(stage);
+			event.begin();
+			return event;
+		}
+
+		private static void commit(Object handle, String loggerName, String level, long size) {
+			StageEvent event = (StageEvent) handle;
+			event.end();
+			if (event.shouldCommit()) {
+				event.loggerName = loggerName;
+				event.level = level;
+				event.size = size;
+				event.commit();
+			}
+		}
+
+		private static StageEvent newEvent(Stage stage) {
+			switch (stage) {
+			case RECEIVE:
+				return new ReceiveEvent();
+			case PARSE:
+				return new ParseEvent();
+			case BUILD:
+				return new BuildEvent();
+			case ACTIVITY_FLUSH:
+				return new ActivityFlushEvent();
+			case METRICS_SNAPSHOT:
+				return new MetricsSnapshotEvent();
+			default:
+				return new SinkSendEvent();
+			}
+		}
+	}
+
+	@Category({ "TNT4J", "Log4j Appender" })
+	@StackTrace(false)
+	abstract static class StageEvent extends Event {
+		@Label("Logger Name")
+		String loggerName;
+
+		@Label("Level")
+		String level;
+
+		@Label("Size")
+		@Description("Message length in characters, or number of tracking items or snapshot properties")
+		long size;
+	}
+
+	@Name("com.jkoolcloud.tnt4j.log4j.Receive")
+	@Label("Appender Receive")
+	@Description("Log4j event processed by TNT4J appender")
+	@Threshold("20 us")
+	static final class ReceiveEvent extends StageEvent {
+	}
+
+	@Name("com.jkoolcloud.tnt4j.log4j.Parse")
+	@Label("Message Parse")
+	@Description("Hashtag attributes parsed from log4j event message")
+	@Threshold("20 us")
+	static final class ParseEvent extends StageEvent {
+	}
+
+	@Name("com.jkoolcloud.tnt4j.log4j.Build")
+	@Label("Event Build")
+	@Description("TNT4J tracking event built from log4j event")
+	@Threshold("20 us")
+	static final class BuildEvent extends StageEvent {
+	}
+
+	@Name("com.jkoolcloud.tnt4j.log4j.ActivityFlush")
+	@Label("Activity Flush")
+	@Description("Ended TNT4J activity processed and sent")
+	@Threshold("0 ms")
+	static final class ActivityFlushEvent extends StageEvent {
+	}
+
+	@Name("com.jkoolcloud.tnt4j.log4j.MetricsSnapshot")
+	@Label("Metrics Snapshot")
+	@Description("Metrics snapshot sampled and reported")
+	@Threshold("0 ms")
+	static final class MetricsSnapshotEvent extends StageEvent {
+	}
+
+	@Name("com.jkoolcloud.tnt4j.log4j.SinkSend")
+	@Label("Sink Send")
+	@Description("Tracking items sent to TNT4J tracker event sink")
+	@Threshold("20 us")
+	static final class SinkSendEvent extends StageEvent {
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.lang.management.*;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.status.StatusLogger;
+
+import com.jkoolcloud.tnt4j.TrackingLogger;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.core.Trackable;
+import com.jkoolcloud.tnt4j.core.ValueTypes;
+
+/**
+ * Collects JVM metrics (memory, threads, GC) on a background thread, so that logging thread only signals the request
+ * and never calls MXBeans itself. MXBean handles are resolved once and reused. Metrics are sampled at most once per
+ * cooldown period and reported as a snapshot linked to the triggering tracking item: snapshot parent is triggering
+ * item and snapshot correlators are item correlators (or item tracking id if item has no correlators). Sampling and
+ * sending failures are reported to log4j status logger and do not stop collector.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager
+ */
+public class JvmMetricsCollector {
+	/**
+	 * Name of snapshot carrying JVM metrics
+	 */
+	public static final String SNAPSHOT_NAME = "JVM.Metrics";
+
+	private static final Logger LOGGER = StatusLogger.getLogger();
+
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final RuntimeMXBean RUNTIME = ManagementFactory.getRuntimeMXBean();
+	private static final OperatingSystemMXBean OS = ManagementFactory.getOperatingSystemMXBean();
+	private static final List<GarbageCollectorMXBean> GCS = ManagementFactory.getGarbageCollectorMXBeans();
+
+	private final TrackingLogger logger;
+	private final String category;
+	private final long cooldownMillis;
+	private final BiConsumer<Trackable, String> sender;
+
+	private final AtomicLong lastSample = new AtomicLong();
+	private final AtomicReference<Trackable> pending = new AtomicReference<>();
+	private volatile String pendingLogger;
+	private final Thread collector;
+	private volatile boolean running = true;
+
+	/**
+	 * Constructs and starts a new JVM metrics collector.
+	 *
+	 * @param name
+	 *            collector name, used to name collector thread
+	 * @param logger
+	 *            tracking logger used to create metrics snapshots
+	 * @param category
+	 *            metrics snapshot category
+	 * @param cooldownMillis
+	 *            minimal period between two metrics samples, in milliseconds
+	 * @param sender
+	 *            sends metrics snapshots along with name of log4j logger which event triggered the sample
+	 */
+	public JvmMetricsCollector(String name, TrackingLogger logger, String category, long cooldownMillis,
+			BiConsumer<Trackable, String> sender) {
+		this.logger = logger;
+		this.category = category;
+		this.cooldownMillis = cooldownMillis;
+		this.sender = sender;
+
+		lastSample.set(System.currentTimeMillis() - cooldownMillis);
+		collector = new Thread(this::collect, "TNT4J-metrics-" + name);
+		collector.setDaemon(true);
+		collector.start();
+	}
+
+	/**
+	 * Requests metrics sample linked to given tracking item. Request is ignored if cooldown period since the last
+	 * sample has not elapsed yet. This method does not allocate and does not call MXBeans.
+	 *
+	 * @param trigger
+	 *            tracking item triggering metrics sample
+	 * @param loggerName
+	 *            name of log4j logger trigger item originates from
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @return {@code true} if sample has been requested, {@code false} - if request is ignored
+	 */
+	public boolean request(Trackable trigger, String loggerName, long now) {
+		long last = lastSample.get();
+		if ((now - last) < cooldownMillis || !lastSample.compareAndSet(last, now)) {
+			return false;
+		}
+		// written before trigger is published, so collector taking trigger sees its logger name (or a newer one)
+		pendingLogger = loggerName;
+		pending.set(trigger);
+		LockSupport.unpark(collector);
+		return true;
+	}
+
+	/**
+	 * Stops collector thread.
+	 */
+	public void stop() {
+		running = false;
+		LockSupport.unpark(collector);
+	}
+
+	private void collect() {
+		while (running) {
+			Trackable trigger = pending.getAndSet(null);
+			if (trigger == null) {
+				LockSupport.park(this);
+				continue;
+			}
+			try {
+				Object jfr = JfrEvents.begin(JfrEvents.Stage.METRICS_SNAPSHOT);
+				Snapshot snapshot = sample(trigger);
+				sender.accept(snapshot, pendingLogger);
+				if (jfr != null) {
+					JfrEvents.commit(jfr, SNAPSHOT_NAME, snapshot.getSeverity().name(), snapshot.size());
+				}
+			} catch (Exception exc) {
+				// metrics are best effort, collector must survive sink failures (failures are rate limited by cooldown)
+				LOGGER.warn("Unable to collect JVM metrics of collector={}", collector.getName(), exc);
+			}
+		}
+	}
+
+	/**
+	 * Samples JVM metrics into a new snapshot linked to given tracking item.
+	 *
+	 * @param trigger
+	 *            tracking item triggering metrics sample
+	 * @return JVM metrics snapshot
+	 */
+	protected Snapshot sample(Trackable trigger) {
+		Snapshot snapshot = logger.newSnapshot(category, SNAPSHOT_NAME, OpLevel.INFO);
+		snapshot.setParentId(trigger);
+		Set<String> cids = trigger.getCorrelator();
+		if (cids == null || cids.isEmpty()) {
+			snapshot.setCorrelator(trigger.getTrackingId());
+		} else {
+			snapshot.setCorrelator(cids);
+		}
+
+		MemoryUsage heap = MEMORY.getHeapMemoryUsage();
+		MemoryUsage nonHeap = MEMORY.getNonHeapMemoryUsage();
+		snapshot.add("heap.used", heap.getUsed(), ValueTypes.VALUE_TYPE_SIZE_BYTE);
+		snapshot.add("heap.committed", heap.getCommitted(), ValueTypes.VALUE_TYPE_SIZE_BYTE);
+		snapshot.add("heap.max", heap.getMax(), ValueTypes.VALUE_TYPE_SIZE_BYTE);
+		snapshot.add("nonheap.used", nonHeap.getUsed(), ValueTypes.VALUE_TYPE_SIZE_BYTE);
+		snapshot.add("nonheap.committed", nonHeap.getCommitted(), ValueTypes.VALUE_TYPE_SIZE_BYTE);
+		snapshot.add("thread.count", THREADS.getThreadCount(), ValueTypes.VALUE_TYPE_GAUGE);
+		snapshot.add("thread.daemon.count", THREADS.getDaemonThreadCount(), ValueTypes.VALUE_TYPE_GAUGE);
+		snapshot.add("thread.peak.count", THREADS.getPeakThreadCount(), ValueTypes.VALUE_TYPE_GAUGE);
+		snapshot.add("system.load.average", OS.getSystemLoadAverage(), ValueTypes.VALUE_TYPE_GAUGE);
+		snapshot.add("uptime.ms", RUNTIME.getUptime(), ValueTypes.VALUE_TYPE_AGE_MSEC);
+		for (GarbageCollectorMXBean gc : GCS) {
+			snapshot.add("gc." + gc.getName() + ".count", gc.getCollectionCount(), ValueTypes.VALUE_TYPE_COUNTER);
+			snapshot.add("gc." + gc.getName() + ".time.ms", gc.getCollectionTime(), ValueTypes.VALUE_TYPE_AGE_MSEC);
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,518 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Trackable;
+
+/**
+ * Queue of tracking items split into priority lanes by item severity. {@code ERROR} and more severe items go to small
+ * dedicated urgent lane, which is drained first. Urgent lane holds up to {@value #URGENT_CAPACITY} items and rejects
+ * newly offered ones only when sink is stuck for that long, leaving it up to caller to send rejected item some other
+ * way (e.g. {@link TNT4JManager} sends it right away). Less severe items go to bounded lane of their logger group
+ * (see {@link LoggerGroups}), which drops items according to its {@link DropPolicy} when full. Every lane meters its
+ * depth, number of enqueued, sent and dropped items and queueing latency.
+ * <p>
+ * Group lanes share queue capacity proportionally to group weights and are drained using deficit round-robin: every
+ * round, each non-empty lane may send as many items as its weight (plus credit unused in previous round). So flood of
+ * one group raises only that group drop rate and does not delay items of other groups.
+ * <p>
+ * Queue state is guarded by queue lock. Drain takes items out while holding queue lock and passes them to consumer
+ * after releasing it, so threads offering items never wait for items being sent. Total queue depth is kept in a
+ * counter, which may be read without locking. Drains are serialized by separate
+ * drain lock, so items are still sent in the order they are drained, except urgent lane only drains, which never wait.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager
+ */
+public class LaneQueue {
+	/**
+	 * Defines what happens when item is offered to full lane.
+	 */
+	public enum DropPolicy {
+		/**
+		 * Offered item is dropped
+		 */
+		DROP_NEWEST,
+		/**
+		 * Oldest queued item is dropped to make room for offered item
+		 */
+		DROP_OLDEST
+	}
+
+	/**
+	 * Default normal lane capacity
+	 */
+	public static final int DEFAULT_CAPACITY = 10_000;
+	/**
+	 * Urgent lane capacity
+	 */
+	public static final int URGENT_CAPACITY = 1_000;
+
+	private final Lane urgent = new Lane("urgent", URGENT_CAPACITY, 0, DropPolicy.DROP_NEWEST);
+	private final Object drainLock = new Object();
+	private final Lane[] lanes;
+	private final int capacity;
+	private final DropPolicy dropPolicy;
+	private final LoggerGroups groups;
+	private int cursor;
+	private volatile int depth;
+
+	/**
+	 * Constructs a new lane queue having single lane for lower than {@code ERROR} severity items.
+	 *
+	 * @param capacity
+	 *            lower severity items capacity, {@code 0} - unbounded
+	 * @param dropPolicy
+	 *            lower severity lanes drop policy
+	 */
+	public LaneQueue(int capacity, DropPolicy dropPolicy) {
+		this(capacity, dropPolicy, LoggerGroups.NONE);
+	}
+
+	/**
+	 * Constructs a new lane queue having lane per logger group for lower than {@code ERROR} severity items.
+	 *
+	 * @param capacity
+	 *            lower severity items capacity, shared by group lanes proportionally to group weights, {@code 0} -
+	 *            unbounded
+	 * @param dropPolicy
+	 *            lower severity lanes drop policy
+	 * @param groups
+	 *            logger groups
+	 */
+	public LaneQueue(int capacity, DropPolicy dropPolicy, LoggerGroups groups) {
+		this.capacity = Math.max(0, capacity);
+		this.dropPolicy = dropPolicy == null ? DropPolicy.DROP_NEWEST : dropPolicy;
+		this.groups = groups == null ? LoggerGroups.NONE : groups;
+
+		int totalWeight = 0;
+		for (int i = 0; i < this.groups.size(); i++) {
+			totalWeight += this.groups.getWeight(i);
+		}
+		lanes = new Lane[this.groups.size()];
+		for (int i = 0; i < lanes.length; i++) {
+			int weight = this.groups.getWeight(i);
+			int laneCapacity = this.capacity == 0 ? 0
+					: (int) Math.max(1, (long) this.capacity * weight / totalWeight);
+			lanes[i] = new Lane(this.groups.getName(i), laneCapacity, weight, this.dropPolicy);
+		}
+	}
+
+	/**
+	 * Checks whether items of given severity go to urgent lane.
+	 *
+	 * @param severity
+	 *            item severity
+	 * @return {@code true} if severity is {@code ERROR} or higher, {@code false} - otherwise
+	 */
+	public static boolean isUrgent(OpLevel severity) {
+		return severity.ordinal() >= OpLevel.ERROR.ordinal();
+	}
+
+	/**
+	 * Offers tracking item to lane matching its severity, using default logger group lane for lower severity items.
+	 *
+	 * @param item
+	 *            tracking item
+	 * @param severity
+	 *            item severity
+	 * @return {@code true} if item was queued, {@code false} - if item was dropped
+	 */
+	public boolean offer(Trackable item, OpLevel severity) {
+		return offer(item, severity, null);
+	}
+
+	/**
+	 * Offers tracking item to lane matching its severity and group of log4j logger item originates from. Logger name
+	 * is queued along with item, so item keeps its group when moved to another queue.
+	 *
+	 * @param item
+	 *            tracking item
+	 * @param severity
+	 *            item severity
+	 * @param loggerName
+	 *            name of log4j logger item originates from, {@code null} - item belongs to default logger group
+	 * @return {@code true} if item was queued, {@code false} - if item was dropped
+	 */
+	public boolean offer(Trackable item, OpLevel severity, String loggerName) {
+		return offer(item, isUrgent(severity), loggerName);
+	}
+
+	private boolean offer(Trackable item, boolean urgentItem, String loggerName) {
+		int group = urgentItem ? LoggerGroups.DEFAULT_INDEX : groups.indexOf(loggerName);
+		synchronized (this) {
+			Lane lane = urgentItem ? urgent : lanes[group];
+			int count = lane.count;
+			boolean queued = lane.offer(item, loggerName);
+			depth += lane.count - count;
+			return queued;
+		}
+	}
+
+	/**
+	 * Moves all queued items into given queue, urgent lane first. Lower severity items go to target lanes of their
+	 * logger groups.
+	 *
+	 * @param target
+	 *            queue to move items to
+	 * @return number of moved items
+	 */
+	public int drainTo(LaneQueue target) {
+		List<Trackable> batch = new ArrayList<>();
+		List<String> loggerNames = new ArrayList<>();
+		int urgentCount;
+		synchronized (drainLock) {
+			synchronized (this) {
+				urgentCount = urgent.drain(batch, loggerNames, Integer.MAX_VALUE);
+				for (Lane lane : lanes) {
+					lane.drain(batch, loggerNames, Integer.MAX_VALUE);
+				}
+				depth -= batch.size();
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				target.offer(batch.get(i), i < urgentCount, loggerNames.get(i));
+			}
+		}
+		return batch.size();
+	}
+
+	/**
+	 * Drains all queued items, urgent lane first.
+	 *
+	 * @param consumer
+	 *            drained items consumer
+	 * @return number of drained items
+	 */
+	public int drain(Consumer<Trackable> consumer) {
+		return drain(consumer, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Drains at most given number of queued items: urgent lane first, then logger group lanes using deficit
+	 * round-robin.
+	 *
+	 * @param consumer
+	 *            drained items consumer
+	 * @param max
+	 *            maximum number of items to drain
+	 * @return number of drained items
+	 */
+	public int drain(Consumer<Trackable> consumer, int max) {
+		synchronized (drainLock) {
+			return consume(take(max), consumer);
+		}
+	}
+
+	/**
+	 * Drains urgent lane items only. Does not wait for other drains still sending, so urgent items overtake lower
+	 * severity items being sent.
+	 *
+	 * @param consumer
+	 *            drained items consumer
+	 * @return number of drained items
+	 */
+	public int drainUrgent(Consumer<Trackable> consumer) {
+		List<Trackable> batch;
+		synchronized (this) {
+			batch = new ArrayList<>(urgent.depth());
+			depth -= urgent.drain(batch, null, Integer.MAX_VALUE);
+		}
+		return consume(batch, consumer);
+	}
+
+	private synchronized List<Trackable> take(int max) {
+		List<Trackable> batch = new ArrayList<>(Math.min(max, depth));
+		int drained = urgent.drain(batch, null, max);
+		if (lanes.length == 1) {
+			lanes[0].drain(batch, null, max - drained);
+			depth -= batch.size();
+			return batch;
+		}
+		while (drained < max && normalDepth() > 0) {
+			Lane lane = lanes[cursor];
+			cursor = (cursor + 1) % lanes.length;
+			if (lane.depth() == 0) {
+				lane.deficit = 0;
+				continue;
+			}
+			lane.deficit += lane.weight;
+			int sent = lane.drain(batch, null, Math.min(lane.deficit, max - drained));
+			lane.deficit = lane.depth() == 0 ? 0 : lane.deficit - sent;
+			drained += sent;
+		}
+		depth -= drained;
+		return batch;
+	}
+
+	private static int consume(List<Trackable> batch, Consumer<Trackable> consumer) {
+		for (Trackable item : batch) {
+			consumer.accept(item);
+		}
+		return batch.size();
+	}
+
+	/**
+	 * Returns total number of queued items. This value is read without locking.
+	 *
+	 * @return number of queued items
+	 */
+	public int size() {
+		return depth;
+	}
+
+	private int normalDepth() {
+		int depth = 0;
+		for (Lane lane : lanes) {
+			depth += lane.depth();
+		}
+		return depth;
+	}
+
+	/**
+	 * Returns capacity for lower than {@code ERROR} severity items.
+	 *
+	 * @return capacity, {@code 0} - unbounded
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns drop policy of lower severity lanes.
+	 *
+	 * @return drop policy
+	 */
+	public DropPolicy getDropPolicy() {
+		return dropPolicy;
+	}
+
+	/**
+	 * Returns logger groups of lower severity lanes.
+	 *
+	 * @return logger groups
+	 */
+	public LoggerGroups getGroups() {
+		return groups;
+	}
+
+	/**
+	 * Returns urgent lane.
+	 *
+	 * @return urgent lane
+	 */
+	public Lane getUrgentLane() {
+		return urgent;
+	}
+
+	/**
+	 * Returns lower severity lanes, one per logger group, ordered by group index.
+	 *
+	 * @return unmodifiable list of logger group lanes
+	 */
+	public List<Lane> getGroupLanes() {
+		return Collections.unmodifiableList(Arrays.asList(lanes));
+	}
+
+	/**
+	 * Single bounded FIFO lane with metering.
+	 */
+	public static final class Lane {
+		private final String name;
+		private final int capacity;
+		private final int weight;
+		private final DropPolicy dropPolicy;
+		private Trackable[] items;
+		private String[] loggers;
+		private long[] times;
+		private int head;
+		private int count;
+
+		private volatile long enqueued;
+		private volatile long sent;
+		private volatile long dropped;
+		private volatile LatencyHistogram latency = new LatencyHistogram();
+		private int deficit;
+
+		private Lane(String name, int capacity, int weight, DropPolicy dropPolicy) {
+			this.name = name;
+			this.capacity = capacity;
+			this.weight = weight;
+			this.dropPolicy = dropPolicy;
+			int initial = capacity > 0 ? Math.min(capacity, 16) : 16;
+			items = new Trackable[initial];
+			loggers = new String[initial];
+			times = new long[initial];
+		}
+
+		private boolean offer(Trackable item, String loggerName) {
+			if (capacity > 0 && count >= capacity) {
+				dropped++;
+				if (dropPolicy == DropPolicy.DROP_NEWEST) {
+					return false;
+				}
+				items[head] = null;
+				loggers[head] = null;
+				head = (head + 1) % items.length;
+				count--;
+			} else if (count == items.length) {
+				grow();
+			}
+			int tail = (head + count) % items.length;
+			items[tail] = item;
+			loggers[tail] = loggerName;
+			times[tail] = System.nanoTime();
+			count++;
+			enqueued++;
+			return true;
+		}
+
+		private void grow() {
+			int length = items.length << 1;
+			if (capacity > 0) {
+				length = Math.min(length, capacity);
+			}
+			Trackable[] newItems = new Trackable[length];
+			String[] newLoggers = new String[length];
+			long[] newTimes = new long[length];
+			for (int i = 0; i < count; i++) {
+				int idx = (head + i) % items.length;
+				newItems[i] = items[idx];
+				newLoggers[i] = loggers[idx];
+				newTimes[i] = times[idx];
+			}
+			items = newItems;
+			loggers = newLoggers;
+			times = newTimes;
+			head = 0;
+		}
+
+		private int drain(List<Trackable> batch, List<String> loggerNames, int max) {
+			int drained = 0;
+			long now = System.nanoTime();
+			LatencyHistogram hist = latency;
+			while (drained < max && count > 0) {
+				batch.add(items[head]);
+				if (loggerNames != null) {
+					loggerNames.add(loggers[head]);
+				}
+				hist.record((now - times[head]) / 1_000);
+				items[head] = null;
+				loggers[head] = null;
+				head = (head + 1) % items.length;
+				count--;
+				drained++;
+			}
+			sent += drained;
+			return drained;
+		}
+
+		private int depth() {
+			return count;
+		}
+
+		/**
+		 * Returns lane name.
+		 *
+		 * @return lane name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns lane capacity.
+		 *
+		 * @return lane capacity, {@code 0} - unbounded
+		 */
+		public int getCapacity() {
+			return capacity;
+		}
+
+		/**
+		 * Returns lane weight (number of items lane may send per drain round).
+		 *
+		 * @return lane weight
+		 */
+		public int getWeight() {
+			return weight;
+		}
+
+		/**
+		 * Returns lane drop policy.
+		 *
+		 * @return lane drop policy
+		 */
+		public DropPolicy getDropPolicy() {
+			return dropPolicy;
+		}
+
+		/**
+		 * Returns number of items currently queued in this lane.
+		 *
+		 * @return lane depth
+		 */
+		public int getDepth() {
+			return count;
+		}
+
+		/**
+		 * Returns total number of items queued in this lane.
+		 *
+		 * @return number of enqueued items
+		 */
+		public long getEnqueuedCount() {
+			return enqueued;
+		}
+
+		/**
+		 * Returns total number of items drained from this lane.
+		 *
+		 * @return number of sent items
+		 */
+		public long getSentCount() {
+			return sent;
+		}
+
+		/**
+		 * Returns total number of items dropped by this lane. For urgent lane, it is number of rejected items.
+		 *
+		 * @return number of dropped items
+		 */
+		public long getDroppedCount() {
+			return dropped;
+		}
+
+		/**
+		 * Returns queueing latency histogram of items drained since last call and starts a new one.
+		 *
+		 * @return queueing latency histogram (in microseconds)
+		 */
+		public LatencyHistogram resetLatency() {
+			LatencyHistogram hist = latency;
+			latency = new LatencyHistogram();
+			return hist;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.jkoolcloud.tnt4j.TrackingLogger;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.core.Trackable;
+import com.jkoolcloud.tnt4j.core.ValueTypes;
+
+/**
+ * Aggregates operation latencies into per operation name {@link LatencyHistogram}s and periodically reports them as
+ * TNT4J snapshots containing count, p50, p90, p99 and max values for the reporting interval. Every operation keeps
+ * two histograms, swapped on every report, so no histograms are allocated once operation is known.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager
+ */
+public class LatencyAggregator {
+	/**
+	 * Maximum number of distinct operation names tracked, all other operations are aggregated under
+	 * {@link #OVERFLOW_OPERATION}
+	 */
+	public static final int MAX_OPERATIONS = 1_000;
+	/**
+	 * Operation name used to aggregate latencies when {@link #MAX_OPERATIONS} limit is reached
+	 */
+	public static final String OVERFLOW_OPERATION = "OTHER";
+
+	private final Map<String, Interval> histograms = new ConcurrentHashMap<>();
+	private final AtomicLong lastReport = new AtomicLong(System.currentTimeMillis());
+	private final long intervalMillis;
+
+	/**
+	 * Constructs a new latency aggregator.
+	 *
+	 * @param intervalSec
+	 *            reporting interval, in seconds
+	 */
+	public LatencyAggregator(long intervalSec) {
+		this.intervalMillis = intervalSec * 1_000;
+	}
+
+	/**
+	 * Records operation latency.
+	 *
+	 * @param opName
+	 *            operation name
+	 * @param elapsedUsec
+	 *            operation elapsed time, in microseconds
+	 */
+	public void record(String opName, long elapsedUsec) {
+		Interval interval = histograms.get(opName);
+		if (interval == null) {
+			String key = histograms.size() < MAX_OPERATIONS ? opName : OVERFLOW_OPERATION;
+			interval = histograms.computeIfAbsent(key, k -> new Interval());
+		}
+		interval.active.record(elapsedUsec);
+	}
+
+	/**
+	 * Checks whether reporting interval has elapsed since last report.
+	 *
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @return {@code true} if aggregated latencies shall be reported, {@code false} - otherwise
+	 */
+	public boolean isDue(long now) {
+		return (now - lastReport.get()) >= intervalMillis;
+	}
+
+	/**
+	 * Reports latencies aggregated over last interval as one snapshot per operation and starts a new interval. Only one
+	 * of concurrently calling threads does the reporting.
+	 *
+	 * @param logger
+	 *            tracking logger used to create snapshots
+	 * @param category
+	 *            snapshot category name
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 * @param sender
+	 *            consumer sending built snapshots
+	 * @return number of reported snapshots
+	 */
+	public int report(TrackingLogger logger, String category, long now, Consumer<? super Trackable> sender) {
+		long last = lastReport.get();
+		if ((now - last) < intervalMillis || !lastReport.compareAndSet(last, now)) {
+			return 0;
+		}
+		int reported = 0;
+		for (Map.Entry<String, Interval> entry : histograms.entrySet()) {
+			LatencyHistogram histogram = entry.getValue().swap();
+			if (histogram.getCount() == 0) {
+				histogram.reset(now);
+				continue;
+			}
+			Snapshot snapshot = logger.newSnapshot(category, entry.getKey(), OpLevel.INFO);
+			snapshot.add("latency.count", histogram.getCount(), ValueTypes.VALUE_TYPE_COUNTER);
+			snapshot.add("latency.p50.usec", histogram.getValueAtPercentile(50.0), ValueTypes.VALUE_TYPE_AGE_USEC);
+			snapshot.add("latency.p90.usec", histogram.getValueAtPercentile(90.0), ValueTypes.VALUE_TYPE_AGE_USEC);
+			snapshot.add("latency.p99.usec", histogram.getValueAtPercentile(99.0), ValueTypes.VALUE_TYPE_AGE_USEC);
+			snapshot.add("latency.max.usec", histogram.getMax(), ValueTypes.VALUE_TYPE_AGE_USEC);
+			snapshot.add("latency.interval.ms", now - histogram.getStartTime(), ValueTypes.VALUE_TYPE_AGE_MSEC);
+			histogram.reset(now);
+			sender.accept(snapshot);
+			reported++;
+		}
+		return reported;
+	}
+
+	/**
+	 * Pair of operation histograms: active one is recorded into, spare one is reset and waiting for next interval.
+	 * Spare histogram is accessed only by reporting thread.
+	 */
+	private static final class Interval {
+		private volatile LatencyHistogram active = new LatencyHistogram();
+		private LatencyHistogram spare = new LatencyHistogram();
+
+		private LatencyHistogram swap() {
+			LatencyHistogram reported = active;
+			active = spare;
+			spare = reported;
+			return reported;
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory, lock-free latency histogram using log-linear buckets (HDR style). Values are recorded in microseconds
+ * with ~1.5% relative precision, up to {@link #MAX_TRACKABLE_VALUE}. Larger values are clamped to the highest bucket
+ * (but still reported correctly as the maximum).
+ * <p>
+ * Recording is safe to be called concurrently by many threads. Histograms having same layout can be merged, which allows
+ * combining interval histograms into longer periods.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.LatencyAggregator
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+	private static final int MAX_MAGNITUDE = 36;
+
+	/**
+	 * Highest value tracked with bucket precision (about 19 hours in microseconds)
+	 */
+	public static final long MAX_TRACKABLE_VALUE = (1L << MAX_MAGNITUDE) - 1;
+
+	private static final int BUCKETS_COUNT = SUB_BUCKET_COUNT
+			+ (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+	private final AtomicLong totalCount = new AtomicLong();
+	private final AtomicLong maxValue = new AtomicLong();
+	private volatile long startTime;
+
+	/**
+	 * Constructs a new empty latency histogram.
+	 */
+	public LatencyHistogram() {
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Records a single latency value.
+	 *
+	 * @param value
+	 *            latency value, in microseconds. Negative values are recorded as {@code 0}
+	 */
+	public void record(long value) {
+		long v = Math.max(0, value);
+		counts.incrementAndGet(bucketIndex(Math.min(v, MAX_TRACKABLE_VALUE)));
+		totalCount.incrementAndGet();
+
+		long max = maxValue.get();
+		while (v > max && !maxValue.compareAndSet(max, v)) {
+			max = maxValue.get();
+		}
+	}
+
+	/**
+	 * Adds all recorded values of given histogram into this histogram.
+	 *
+	 * @param other
+	 *            histogram to merge into this one
+	 */
+	public void merge(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS_COUNT; i++) {
+			long c = other.counts.get(i);
+			if (c != 0) {
+				counts.addAndGet(i, c);
+			}
+		}
+		totalCount.addAndGet(other.totalCount.get());
+		long oMax = other.maxValue.get();
+		long max = maxValue.get();
+		while (oMax > max && !maxValue.compareAndSet(max, oMax)) {
+			max = maxValue.get();
+		}
+	}
+
+	/**
+	 * Clears all recorded values, so histogram can be reused for a new interval.
+	 *
+	 * @param startTime
+	 *            new interval start time in milliseconds since epoch
+	 */
+	public void reset(long startTime) {
+		for (int i = 0; i < BUCKETS_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		totalCount.set(0);
+		maxValue.set(0);
+		this.startTime = startTime;
+	}
+
+	/**
+	 * Returns total number of recorded values.
+	 *
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * Returns maximum recorded value.
+	 *
+	 * @return maximum recorded value, in microseconds
+	 */
+	public long getMax() {
+		return maxValue.get();
+	}
+
+	/**
+	 * Returns time this histogram was created or last reset.
+	 *
+	 * @return histogram interval start time in milliseconds since epoch
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Returns value at given percentile. Returned value is the highest value equivalent (within histogram precision) to
+	 * the value found at requested percentile, but never greater than recorded maximum.
+	 *
+	 * @param percentile
+	 *            percentile in range {@code [0, 100]}
+	 * @return value at given percentile, in microseconds, or {@code 0} if histogram is empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = totalCount.get();
+		if (total == 0) {
+			return 0;
+		}
+		double p = Math.min(Math.max(percentile, 0.0), 100.0);
+		long countAtPercentile = Math.max(1, (long) Math.ceil((p / 100.0) * total));
+		long running = 0;
+		for (int i = 0; i < BUCKETS_COUNT; i++) {
+			running += counts.get(i);
+			if (running >= countAtPercentile) {
+				return Math.min(highestEquivalentValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - (SUB_BUCKET_BITS - 1);
+		int subBucket = (int) (value >>> shift);
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+	}
+
+	private static long highestEquivalentValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int offset = index - SUB_BUCKET_COUNT;
+		int shift = offset / SUB_BUCKET_HALF + 1;
+		long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
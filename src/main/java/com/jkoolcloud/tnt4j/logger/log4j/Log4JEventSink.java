@@ -16,7 +16,9 @@
 package com.jkoolcloud.tnt4j.logger.log4j;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import org.apache.logging.log4j.Level;
@@ -25,14 +27,31 @@ import org.apache.logging.log4j.Logger;
 
 import com.jkoolcloud.tnt4j.core.OpLevel;
 import com.jkoolcloud.tnt4j.core.OpType;
+import com.jkoolcloud.tnt4j.core.Snapshot;
 import com.jkoolcloud.tnt4j.format.EventFormatter;
+import com.jkoolcloud.tnt4j.format.JSONFormatter;
 import com.jkoolcloud.tnt4j.sink.impl.LoggerEventSink;
+import com.jkoolcloud.tnt4j.source.Source;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
  * <p>
  * {@link com.jkoolcloud.tnt4j.sink.EventSink} implementation that routes log messages to log4j. This implementation is
  * designed to log messages to log4j framework.
  * </p>
+ * <p>
+ * In structured mode, tracking events, activities and snapshots are passed to log4j as {@link TNT4JMessage} carrying
+ * original TNT4J object, so log4j layouts render it only once (e.g. {@code JsonTemplateLayout} resolves {@code JSON}
+ * message format directly). Sink event formatter is used only to render plain text message.
+ * </p>
+ * <p>
+ * Routing mode (see {@link RouteBy}) writes events to per source (or per resource) log4j loggers named
+ * {@code <sink name>.<source name>}, so levels and appenders can be tuned per component. Logger handles and their
+ * enabled levels are resolved through bounded cache, so routing costs single lookup per event. Sink logger level
+ * remains the upper bound for all routed loggers, since TNT4J checks it before passing events to the sink.
+ * </p>
  *
  * @version $Revision: 12 $
  *
@@ -44,7 +63,44 @@ public class Log4JEventSink extends LoggerEventSink {
 	private static final String[] log4JSevMap = { "INFO", "TRACE", "DEBUG", "INFO", "WARN", "WARN", "ERROR", "FATAL",
 			"FATAL", "FATAL", "FATAL" };
 
+	private static final Level[] LEVELS = new Level[log4JSevMap.length];
+	private static final JSONFormatter JSON_FORMATTER = new JSONFormatter(false);
+
+	/**
+	 * Default maximum number of cached routed loggers
+	 */
+	public static final int DEFAULT_MAX_ROUTES = 1_000;
+
+	static {
+		for (int i = 0; i < LEVELS.length; i++) {
+			LEVELS[i] = Level.toLevel(log4JSevMap[i], Level.INFO);
+		}
+	}
+
+	/**
+	 * Defines how events are routed to log4j loggers.
+	 */
+	public enum RouteBy {
+		/**
+		 * All events are written to sink logger
+		 */
+		NONE,
+		/**
+		 * Events are written to logger named by event source name
+		 */
+		SOURCE,
+		/**
+		 * Events are written to logger named by event resource
+		 */
+		RESOURCE
+	}
+
 	private Logger logger = null;
+	private Route defaultRoute = null;
+	private boolean structured = false;
+	private RouteBy routeBy = RouteBy.NONE;
+	private int maxRoutes = DEFAULT_MAX_ROUTES;
+	private final Map<String, Route> routes = new ConcurrentHashMap<>();
 
 	/**
 	 * Create a new log4j backed event sink
@@ -61,6 +117,49 @@ public class Log4JEventSink extends LoggerEventSink {
 		_open();
 	}
 
+	/**
+	 * Enables structured mode: tracking events, activities and snapshots are passed to log4j as {@link TNT4JMessage}
+	 * instead of string rendered by sink event formatter.
+	 *
+	 * @param structured
+	 *            flag indicating whether structured mode is enabled
+	 */
+	public void setStructured(boolean structured) {
+		this.structured = structured;
+	}
+
+	/**
+	 * Checks whether structured mode is enabled.
+	 *
+	 * @return {@code true} if structured mode is enabled, {@code false} - otherwise
+	 */
+	public boolean isStructured() {
+		return structured;
+	}
+
+	/**
+	 * Sets events routing mode.
+	 *
+	 * @param routeBy
+	 *            events routing mode
+	 * @param maxRoutes
+	 *            maximum number of cached routed loggers
+	 */
+	public void setRouting(RouteBy routeBy, int maxRoutes) {
+		this.routeBy = routeBy == null ? RouteBy.NONE : routeBy;
+		this.maxRoutes = maxRoutes > 0 ? maxRoutes : DEFAULT_MAX_ROUTES;
+		routes.clear();
+	}
+
+	/**
+	 * Returns events routing mode.
+	 *
+	 * @return events routing mode
+	 */
+	public RouteBy getRouteBy() {
+		return routeBy;
+	}
+
 	@Override
 	public boolean isSet(OpLevel sev) {
 		_checkState();
@@ -82,9 +181,15 @@ public class Log4JEventSink extends LoggerEventSink {
 	protected synchronized void _open() {
 		if (logger == null) {
 			logger = LogManager.getLogger(getName());
+			defaultRoute = new Route(logger);
 		}
 	}
 
+	/**
+	 * Sink may be shared by many trackers (see {@link Log4JEventSinkFactory}), so closing it by one tracker keeps log4j
+	 * logger and routes available to the others. Log4j logger handles are owned by log4j {@code LoggerContext}, and sink
+	 * itself is released once no tracker references it anymore.
+	 */
 	@Override
 	protected void _close() throws IOException {
 	}
@@ -105,6 +210,116 @@ public class Log4JEventSink extends LoggerEventSink {
 		logger.log(level, msg, t);
 	}
 
+	@Override
+	protected void _log(TrackingEvent event) {
+		if (!structured && routeBy == RouteBy.NONE) {
+			super._log(event);
+			return;
+		}
+		Route route = getRoute(event.getSource(), event.getOperation().getResource());
+		Throwable t = event.getOperation().getThrowable();
+		if (structured) {
+			writeMessage(route, event.getSeverity(), event, () -> getEventFormatter().format(event),
+					() -> getJSONFormatter().format(event), t);
+		} else {
+			writeLine(route, event.getSeverity(), () -> getEventFormatter().format(event), t);
+		}
+	}
+
+	@Override
+	protected void _log(TrackingActivity activity) {
+		if (!structured && routeBy == RouteBy.NONE) {
+			super._log(activity);
+			return;
+		}
+		Route route = getRoute(activity.getSource(), activity.getResource());
+		Throwable t = activity.getThrowable();
+		if (structured) {
+			writeMessage(route, activity.getSeverity(), activity, () -> getEventFormatter().format(activity),
+					() -> getJSONFormatter().format(activity), t);
+		} else {
+			writeLine(route, activity.getSeverity(), () -> getEventFormatter().format(activity), t);
+		}
+	}
+
+	@Override
+	protected void _log(Snapshot snapshot) {
+		if (!structured) {
+			super._log(snapshot);
+			return;
+		}
+		writeMessage(defaultRoute, snapshot.getSeverity(), snapshot, () -> getEventFormatter().format(snapshot),
+				() -> getJSONFormatter().format(snapshot), null);
+	}
+
+	@Override
+	protected void _log(long ttl, Source src, OpLevel sev, String msg, Object... args) {
+		if (routeBy == RouteBy.NONE) {
+			super._log(ttl, src, sev, msg, args);
+			return;
+		}
+		writeLine(getRoute(src, null), sev, () -> getEventFormatter().format(ttl, src, sev, msg, args),
+				Utils.getThrowable(args));
+	}
+
+	private void writeLine(Route route, OpLevel sev, Supplier<String> entry, Throwable t) {
+		if (!route.isEnabled(sev)) {
+			return;
+		}
+
+		String msg = entry.get();
+		incrementBytesSent(msg.length());
+		route.logger.log(LEVELS[sev.ordinal()], msg, t);
+	}
+
+	private void writeMessage(Route route, OpLevel sev, Object trackable, Supplier<String> text,
+			Supplier<String> json, Throwable t) {
+		if (!route.isEnabled(sev)) {
+			return;
+		}
+
+		route.logger.log(LEVELS[sev.ordinal()], new TNT4JMessage(trackable, text, json, t), t);
+	}
+
+	/**
+	 * Resolves log4j logger route for given event source and resource, as defined by routing mode. Routed logger name
+	 * is sink name followed by source name or resource name, e.g. {@code tnt4j.com.myco.Service}.
+	 *
+	 * @param src
+	 *            event source, or {@code null}
+	 * @param resource
+	 *            event resource, or {@code null}
+	 * @return logger route
+	 */
+	private Route getRoute(Source src, String resource) {
+		_checkState();
+
+		String key;
+		if (routeBy == RouteBy.SOURCE) {
+			key = src == null ? null : src.getName();
+		} else if (routeBy == RouteBy.RESOURCE) {
+			key = resource;
+		} else {
+			key = null;
+		}
+		if (Utils.isEmpty(key)) {
+			return defaultRoute;
+		}
+		Route route = routes.get(key);
+		if (route == null) {
+			if (routes.size() >= maxRoutes) {
+				routes.clear();
+			}
+			route = routes.computeIfAbsent(key, k -> new Route(LogManager.getLogger(getName() + "." + k)));
+		}
+		return route;
+	}
+
+	private JSONFormatter getJSONFormatter() {
+		EventFormatter formatter = getEventFormatter();
+		return formatter instanceof JSONFormatter ? (JSONFormatter) formatter : JSON_FORMATTER;
+	}
+
 	/**
 	 * Maps {@link com.jkoolcloud.tnt4j.core.OpLevel} severity to log4j Level.
 	 *
@@ -114,6 +329,37 @@ public class Log4JEventSink extends LoggerEventSink {
 	 * @see OpType
 	 */
 	public Level getLevel(OpLevel sev) {
-		return Level.toLevel(log4JSevMap[sev.ordinal()], Level.INFO);
+		return LEVELS[sev.ordinal()];
+	}
+
+	/**
+	 * Cached log4j logger handle along with bitmask of {@link OpLevel}s enabled by logger configured level. Bitmask is
+	 * recomputed when logger level changes (e.g. log4j configuration gets reloaded or level set by
+	 * {@code Configurator}). Only levels are cached: log4j filters are evaluated by logger for every logged event.
+	 */
+	private static final class Route {
+		private final Logger logger;
+		private volatile int intLevel = -1;
+		private volatile int enabledMask;
+
+		private Route(Logger logger) {
+			this.logger = logger;
+		}
+
+		private boolean isEnabled(OpLevel sev) {
+			Level lvl = logger.getLevel();
+			int current = lvl == null ? Level.ALL.intLevel() : lvl.intLevel();
+			if (current != intLevel) {
+				int mask = 0;
+				for (int i = 0; i < LEVELS.length; i++) {
+					if (LEVELS[i].intLevel() <= current) {
+						mask |= 1 << i;
+					}
+				}
+				enabledMask = mask;
+				intLevel = current;
+			}
+			return (enabledMask & (1 << sev.ordinal())) != 0;
+		}
 	}
 }
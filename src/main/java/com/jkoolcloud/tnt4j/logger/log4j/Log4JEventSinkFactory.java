@@ -15,12 +15,21 @@
  */
 package com.jkoolcloud.tnt4j.logger.log4j;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+import com.jkoolcloud.tnt4j.config.ConfigException;
+import com.jkoolcloud.tnt4j.config.Configurable;
 import com.jkoolcloud.tnt4j.format.DefaultFormatter;
 import com.jkoolcloud.tnt4j.format.EventFormatter;
 import com.jkoolcloud.tnt4j.sink.AbstractEventSinkFactory;
 import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.utils.Utils;
 
 /**
  * <p>
@@ -28,6 +37,21 @@ import com.jkoolcloud.tnt4j.sink.EventSink;
  * instances of {@link com.jkoolcloud.tnt4j.sink.EventSink}. This factory uses
  * {@link com.jkoolcloud.tnt4j.logger.log4j.Log4JEventSink} as the underlying logger provider.
  * </p>
+ * <p>
+ * Setting factory property {@code Structured: true} makes created sinks pass TNT4J objects to log4j as
+ * {@link com.jkoolcloud.tnt4j.logger.log4j.TNT4JMessage} instead of formatted strings. Factory properties
+ * {@code RouteBy: SOURCE|RESOURCE|NONE} and {@code MaxRoutes} define how sinks route events to per component log4j
+ * loggers (see {@link com.jkoolcloud.tnt4j.logger.log4j.Log4JEventSink.RouteBy}).
+ * </p>
+ * <p>
+ * Sinks are shared: all factories use single JVM wide, weakly referenced registry of created sinks keyed by sink
+ * name, factory settings (effective {@code Structured}, {@code RouteBy}, {@code MaxRoutes} values and rest of factory
+ * configuration) and event formatter configuration, so trackers requesting same sink get the same instance, even when
+ * created by another factory instance (e.g. after log4j or TNT4J reconfiguration). Tracker closing shared sink does not
+ * affect other trackers using it, and sink is released once no tracker references it anymore. Sinks requested without
+ * event formatter get their own {@link DefaultFormatter} instance, since formatter is {@link Configurable} and is not
+ * shared across sinks.
+ * </p>
  *
  *
  * @see EventSink
@@ -37,20 +61,65 @@ import com.jkoolcloud.tnt4j.sink.EventSink;
  *
  */
 public class Log4JEventSinkFactory extends AbstractEventSinkFactory {
+	private static final SinkRegistry SINKS = new SinkRegistry();
+	private static final SinkRegistry DEFAULT_SINKS = new SinkRegistry();
+
+	private boolean structured = false;
+	private Log4JEventSink.RouteBy routeBy = Log4JEventSink.RouteBy.NONE;
+	private int maxRoutes = Log4JEventSink.DEFAULT_MAX_ROUTES;
 
 	@Override
 	public EventSink getEventSink(String name) {
-		return configureSink(new Log4JEventSink(name, System.getProperties(), new DefaultFormatter()));
+		return getEventSink(name, System.getProperties(), null);
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props) {
-		return configureSink(new Log4JEventSink(name, props, new DefaultFormatter()));
+		return getEventSink(name, props, null);
 	}
 
 	@Override
 	public EventSink getEventSink(String name, Properties props, EventFormatter frmt) {
-		return configureSink(new Log4JEventSink(name, props, frmt));
+		return SINKS.get(
+				Arrays.asList(name, structured, routeBy, maxRoutes, getConfiguration(), getFormatterKey(frmt)),
+				() -> configureSink(newSink(name, props, frmt == null ? new DefaultFormatter() : frmt)));
+	}
+
+	/**
+	 * Returns number of sinks currently registered (still referenced) by all factories.
+	 *
+	 * @return number of registered sinks
+	 */
+	public static int getSinkCount() {
+		return SINKS.size();
+	}
+
+	private Log4JEventSink newSink(String name, Properties props, EventFormatter frmt) {
+		Log4JEventSink sink = new Log4JEventSink(name, props, frmt);
+		sink.setStructured(structured);
+		sink.setRouting(routeBy, maxRoutes);
+		return sink;
+	}
+
+	// configurable formatters having same class and configuration are equivalent, others are distinguished by instance
+	private static Object getFormatterKey(EventFormatter frmt) {
+		if (frmt == null) {
+			return DefaultFormatter.class;
+		}
+		if (frmt instanceof Configurable) {
+			return Arrays.asList(frmt.getClass(), ((Configurable) frmt).getConfiguration());
+		}
+		return frmt;
+	}
+
+	@Override
+	public void setConfiguration(Map<String, ?> settings) throws ConfigException {
+		super.setConfiguration(settings);
+
+		structured = Utils.getBoolean("Structured", settings, structured);
+		routeBy = Log4JEventSink.RouteBy
+				.valueOf(Utils.getString("RouteBy", settings, routeBy.name()).trim().toUpperCase());
+		maxRoutes = (int) Utils.getLong("MaxRoutes", settings, maxRoutes);
 	}
 
 	/**
@@ -61,7 +130,7 @@ public class Log4JEventSinkFactory extends AbstractEventSinkFactory {
 	 * @return event sink
 	 */
 	public static EventSink defaultEventSink(String name) {
-		return new Log4JEventSink(name, System.getProperties(), new DefaultFormatter());
+		return DEFAULT_SINKS.get(name, () -> new Log4JEventSink(name, System.getProperties(), new DefaultFormatter()));
 	}
 
 	/**
@@ -74,4 +143,54 @@ public class Log4JEventSinkFactory extends AbstractEventSinkFactory {
 	public static EventSink defaultEventSink(Class<?> clazz) {
 		return defaultEventSink(clazz.getName());
 	}
+
+	/**
+	 * Registry of weakly referenced sinks. Sinks no longer referenced by any tracker are garbage collected and their
+	 * registry entries purged, so registry size stays bounded by number of sinks in use.
+	 */
+	private static final class SinkRegistry {
+		private final Map<Object, SinkRef> sinks = new ConcurrentHashMap<>();
+		private final ReferenceQueue<EventSink> queue = new ReferenceQueue<>();
+
+		EventSink get(Object key, Supplier<EventSink> creator) {
+			purge();
+			EventSink sink = get(key);
+			if (sink != null) {
+				return sink;
+			}
+			synchronized (this) {
+				sink = get(key);
+				if (sink == null) {
+					sink = creator.get();
+					sinks.put(key, new SinkRef(key, sink, queue));
+				}
+				return sink;
+			}
+		}
+
+		int size() {
+			purge();
+			return sinks.size();
+		}
+
+		private EventSink get(Object key) {
+			SinkRef ref = sinks.get(key);
+			return ref == null ? null : ref.get();
+		}
+
+		private void purge() {
+			for (Object ref; (ref = queue.poll()) != null;) {
+				sinks.remove(((SinkRef) ref).key, ref);
+			}
+		}
+	}
+
+	private static final class SinkRef extends WeakReference<EventSink> {
+		private final Object key;
+
+		SinkRef(Object key, EventSink sink, ReferenceQueue<EventSink> queue) {
+			super(sink, queue);
+			this.key = key;
+		}
+	}
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.status.StatusLogger;
+
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * Weighted logger groups defined by logger name prefixes, e.g. {@code org=1,com.myco=4}. Logger belongs to group
+ * having the longest matching (dotted) name prefix, loggers matching no prefix belong to default group {@code *}
+ * (weight {@code 1}, unless defined explicitly). Group weight defines group share of queue capacity and sink throughput.
+ * <p>
+ * Group of every logger name is resolved once using prefix tree and then cached, so group lookup costs single hash map
+ * lookup per event.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.LaneQueue
+ */
+public class LoggerGroups {
+	private static final Logger LOGGER = StatusLogger.getLogger();
+
+	/**
+	 * Default group name
+	 */
+	public static final String DEFAULT_GROUP = "*";
+	/**
+	 * Default group index
+	 */
+	public static final int DEFAULT_INDEX = 0;
+	/**
+	 * Maximum number of cached logger name to group mappings
+	 */
+	public static final int MAX_CACHED_NAMES = 10_000;
+
+	/**
+	 * Logger groups containing only default group
+	 */
+	public static final LoggerGroups NONE = new LoggerGroups(null);
+
+	private final String definition;
+	private final List<String> names = new ArrayList<>();
+	private final List<Integer> weights = new ArrayList<>();
+	private final TokenTrie<Integer> prefixes;
+	private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs logger groups from given definition.
+	 *
+	 * @param definition
+	 *            comma (or semicolon) separated list of {@code prefix[=weight]} entries, {@code null} - only default
+	 *            group is defined. Weight which is not a positive number is reported to status logger and replaced
+	 *            by {@code 1}
+	 */
+	public LoggerGroups(String definition) {
+		this.definition = definition == null ? "" : definition.trim();
+		names.add(DEFAULT_GROUP);
+		weights.add(1);
+
+		Map<String, Integer> groups = new HashMap<>();
+		for (String entry : this.definition.split("[,;]")) {
+			if (Utils.isEmpty(entry.trim())) {
+				continue;
+			}
+			int idx = entry.indexOf('=');
+			String prefix = (idx < 0 ? entry : entry.substring(0, idx)).trim();
+			int weight = idx < 0 ? 1 : parseWeight(entry, entry.substring(idx + 1).trim());
+			if (DEFAULT_GROUP.equals(prefix)) {
+				weights.set(DEFAULT_INDEX, weight);
+			} else if (!groups.containsKey(prefix)) {
+				groups.put(prefix, names.size());
+				names.add(prefix);
+				weights.add(weight);
+			}
+		}
+		prefixes = TokenTrie.compile(groups);
+	}
+
+	private static int parseWeight(String entry, String value) {
+		int weight = 0;
+		try {
+			weight = Integer.parseInt(value);
+		} catch (NumberFormatException exc) {
+			// reported below, along with non positive weight
+		}
+		if (weight <= 0) {
+			LOGGER.warn("Logger group weight must be a positive number, using 1 instead: {}", entry);
+			return 1;
+		}
+		return weight;
+	}
+
+	/**
+	 * Returns index of group given logger belongs to.
+	 *
+	 * @param loggerName
+	 *            logger name
+	 * @return group index, {@link #DEFAULT_INDEX} - if logger belongs to no defined group
+	 */
+	public int indexOf(String loggerName) {
+		if (loggerName == null || names.size() == 1) {
+			return DEFAULT_INDEX;
+		}
+		Integer index = cache.get(loggerName);
+		if (index == null) {
+			Integer group = prefixes.getNearest(loggerName);
+			index = group == null ? DEFAULT_INDEX : group;
+			if (cache.size() >= MAX_CACHED_NAMES) {
+				cache.clear();
+			}
+			cache.put(loggerName, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns number of groups, including default group.
+	 *
+	 * @return number of groups
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * Returns name (logger name prefix) of group.
+	 *
+	 * @param index
+	 *            group index
+	 * @return group name
+	 */
+	public String getName(int index) {
+		return names.get(index);
+	}
+
+	/**
+	 * Returns weight of group.
+	 *
+	 * @param index
+	 *            group index
+	 * @return group weight
+	 */
+	public int getWeight(int index) {
+		return weights.get(index);
+	}
+
+	/**
+	 * Returns groups definition string.
+	 *
+	 * @return groups definition
+	 */
+	public String getDefinition() {
+		return definition;
+	}
+
+	@Override
+	public String toString() {
+		return "LoggerGroups{" + definition + "}";
+	}
+}
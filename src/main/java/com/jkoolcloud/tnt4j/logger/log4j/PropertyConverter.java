@@ -0,0 +1,399 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jkoolcloud.tnt4j.core.Property;
+import com.jkoolcloud.tnt4j.core.ValueTypes;
+import com.jkoolcloud.tnt4j.logger.AppenderTools;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * Converts user defined hashtag attributes into typed snapshot properties, producing same results as
+ * {@link AppenderTools#toProperty(String, String)}: annotated keys ({@code %[data-type][:value-type]/key}) define value
+ * type explicitly, values of plain keys are reported as {@link Long} if numeric, as {@link String} otherwise. Values
+ * not matching defined type are reported as strings.
+ * <p>
+ * Attribute keys are stable (same logging statements are executed over and over again), so key annotation is parsed
+ * once per key and resolved property name, value type and data type are cached. Numbers are parsed without throwing
+ * exceptions on non numeric values. Data type of plain keys can be defined by type hints ({@code key:type}), e.g.
+ * {@code bytes:long,ratio:double,hit:boolean}.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager
+ */
+public class PropertyConverter {
+	/**
+	 * Maximum number of cached keys
+	 */
+	public static final int MAX_CACHED_KEYS = 10_000;
+
+	private static final int INVALID = 0;
+	private static final int VALID = 1;
+	private static final int UNKNOWN = 2;
+
+	/**
+	 * Property value data types.
+	 */
+	public enum DataType {
+		/**
+		 * {@link Long} if value is numeric, {@link String} - otherwise
+		 */
+		AUTO,
+		/**
+		 * {@link String}
+		 */
+		STRING,
+		/**
+		 * {@link Integer}
+		 */
+		INT,
+		/**
+		 * {@link Long}
+		 */
+		LONG,
+		/**
+		 * {@link Float}
+		 */
+		FLOAT,
+		/**
+		 * {@link Double}
+		 */
+		DOUBLE,
+		/**
+		 * {@link Boolean}
+		 */
+		BOOLEAN
+	}
+
+	private final String definition;
+	private final Map<String, DataType> hints;
+	private final Map<String, KeyType> keys = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructs a new property converter.
+	 *
+	 * @param typeHints
+	 *            comma (or semicolon) separated list of {@code key:type} hints, where type is one of {@code string},
+	 *            {@code int}, {@code long}, {@code float}, {@code double}, {@code number} or {@code boolean},
+	 *            {@code null} - no hints
+	 * @throws IllegalArgumentException
+	 *             if type hint is malformed or type name is unknown
+	 */
+	public PropertyConverter(String typeHints) {
+		definition = typeHints == null ? "" : typeHints.trim();
+		Map<String, DataType> map = new HashMap<>();
+		for (String hint : definition.split("[,;]")) {
+			if (Utils.isEmpty(hint.trim())) {
+				continue;
+			}
+			int idx = hint.lastIndexOf(':');
+			if (idx <= 0) {
+				throw new IllegalArgumentException("Attribute type hint must be 'key:type': " + hint);
+			}
+			map.put(hint.substring(0, idx).trim(), toDataType(hint.substring(idx + 1).trim()));
+		}
+		hints = Collections.unmodifiableMap(map);
+	}
+
+	private static DataType toDataType(String name) {
+		switch (name.toLowerCase()) {
+		case "s":
+		case "string":
+			return DataType.STRING;
+		case "i":
+		case "int":
+		case "integer":
+			return DataType.INT;
+		case "l":
+		case "long":
+			return DataType.LONG;
+		case "f":
+		case "float":
+			return DataType.FLOAT;
+		case "d":
+		case "n":
+		case "double":
+		case "number":
+			return DataType.DOUBLE;
+		case "b":
+		case "bool":
+		case "boolean":
+			return DataType.BOOLEAN;
+		default:
+			throw new IllegalArgumentException("Unknown attribute type: " + name);
+		}
+	}
+
+	private static DataType toAnnotatedType(char type) {
+		switch (type) {
+		case 'i':
+			return DataType.INT;
+		case 'l':
+			return DataType.LONG;
+		case 'f':
+			return DataType.FLOAT;
+		case 'd':
+		case 'n':
+			return DataType.DOUBLE;
+		case 'b':
+			return DataType.BOOLEAN;
+		default:
+			// string or annotation without data type
+			return DataType.STRING;
+		}
+	}
+
+	/**
+	 * Converts hashtag attribute into typed property.
+	 *
+	 * @param key
+	 *            attribute key, optionally annotated {@code %[data-type][:value-type]/key}
+	 * @param value
+	 *            attribute value
+	 * @return typed property
+	 */
+	public Property toProperty(String key, String value) {
+		KeyType type = keys.get(key);
+		if (type == null) {
+			if (keys.size() >= MAX_CACHED_KEYS) {
+				keys.clear();
+			}
+			type = keys.computeIfAbsent(key, this::resolve);
+		}
+		return new Property(type.name, convert(type.dataType, value), type.valueType);
+	}
+
+	private KeyType resolve(String key) {
+		String name = AppenderTools.getKey(key);
+		String valueType = AppenderTools.getValueType(key);
+		DataType dataType;
+		if (!key.startsWith("%")) {
+			dataType = hints.getOrDefault(key, DataType.AUTO);
+		} else {
+			dataType = key.length() > 1 ? toAnnotatedType(key.charAt(1)) : DataType.STRING;
+		}
+		return new KeyType(name, valueType, dataType);
+	}
+
+	private static Object convert(DataType dataType, String value) {
+		switch (dataType) {
+		case AUTO:
+		case LONG:
+			Long l = parseLong(value);
+			return l == null ? value : l;
+		case INT:
+			l = parseLong(value);
+			return l == null || l != l.intValue() ? value : Integer.valueOf(l.intValue());
+		case FLOAT:
+			Float f = parseFloat(value);
+			return f == null ? value : f;
+		case DOUBLE:
+			Double d = parseDouble(value);
+			return d == null ? value : d;
+		case BOOLEAN:
+			return Boolean.valueOf(value);
+		default:
+			return value;
+		}
+	}
+
+	/**
+	 * Parses decimal long value accepting same syntax as {@link Long#parseLong(String)}, but without throwing
+	 * exception on invalid input.
+	 *
+	 * @param str
+	 *            string to parse
+	 * @return long value, or {@code null} if string is not a valid long value
+	 */
+	public static Long parseLong(String str) {
+		int len = str == null ? 0 : str.length();
+		if (len == 0) {
+			return null;
+		}
+		int i = 0;
+		boolean negative = false;
+		char first = str.charAt(0);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++i == len) {
+				return null;
+			}
+		}
+		// accumulate negatively to cover Long.MIN_VALUE
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multMin = limit / 10;
+		long result = 0;
+		for (; i < len; i++) {
+			int digit = Character.digit(str.charAt(i), 10);
+			if (digit < 0 || result < multMin) {
+				return null;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return null;
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**
+	 * Parses double value accepting same syntax as {@link Double#parseDouble(String)}. Common decimal notation is
+	 * validated up front, so non numeric values are rejected without throwing exception.
+	 *
+	 * @param str
+	 *            string to parse
+	 * @return double value, or {@code null} if string is not a valid double value
+	 */
+	public static Double parseDouble(String str) {
+		switch (checkDecimal(str)) {
+		case VALID:
+			return Double.valueOf(str);
+		case UNKNOWN:
+			try {
+				return Double.valueOf(str);
+			} catch (NumberFormatException exc) {
+				return null;
+			}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Parses float value accepting same syntax as {@link Float#parseFloat(String)}. Common decimal notation is
+	 * validated up front, so non numeric values are rejected without throwing exception.
+	 *
+	 * @param str
+	 *            string to parse
+	 * @return float value, or {@code null} if string is not a valid float value
+	 */
+	public static Float parseFloat(String str) {
+		switch (checkDecimal(str)) {
+		case VALID:
+			return Float.valueOf(str);
+		case UNKNOWN:
+			try {
+				return Float.valueOf(str);
+			} catch (NumberFormatException exc) {
+				return null;
+			}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Validates decimal floating point notation {@code [+-]digits[.digits][(e|E)[+-]digits][f|F|d|D]}, surrounded by
+	 * optional whitespace. NaN, Infinity and hexadecimal notation are reported as unknown, to be checked by JDK parser.
+	 */
+	private static int checkDecimal(String str) {
+		if (str == null) {
+			return INVALID;
+		}
+		int len = str.length();
+		int i = 0;
+		while (i < len && str.charAt(i) <= ' ') {
+			i++;
+		}
+		while (len > i && str.charAt(len - 1) <= ' ') {
+			len--;
+		}
+		if (i < len && (str.charAt(i) == '-' || str.charAt(i) == '+')) {
+			i++;
+		}
+		if (i < len && (str.charAt(i) == 'N' || str.charAt(i) == 'I')) {
+			return UNKNOWN;
+		}
+		int digits = 0;
+		while (i < len && isDigit(str.charAt(i))) {
+			i++;
+			digits++;
+		}
+		if (i < len && (str.charAt(i) == 'x' || str.charAt(i) == 'X')) {
+			return UNKNOWN;
+		}
+		if (i < len && str.charAt(i) == '.') {
+			i++;
+			while (i < len && isDigit(str.charAt(i))) {
+				i++;
+				digits++;
+			}
+		}
+		if (digits == 0) {
+			return INVALID;
+		}
+		if (i < len && (str.charAt(i) == 'e' || str.charAt(i) == 'E')) {
+			i++;
+			if (i < len && (str.charAt(i) == '-' || str.charAt(i) == '+')) {
+				i++;
+			}
+			int expDigits = 0;
+			while (i < len && isDigit(str.charAt(i))) {
+				i++;
+				expDigits++;
+			}
+			if (expDigits == 0) {
+				return INVALID;
+			}
+		}
+		if (i < len && "fFdD".indexOf(str.charAt(i)) >= 0) {
+			i++;
+		}
+		return i == len ? VALID : INVALID;
+	}
+
+	private static boolean isDigit(char ch) {
+		return ch >= '0' && ch <= '9';
+	}
+
+	/**
+	 * Returns type hints definition string.
+	 *
+	 * @return type hints definition
+	 */
+	public String getDefinition() {
+		return definition;
+	}
+
+	/**
+	 * Returns number of cached keys.
+	 *
+	 * @return number of cached keys
+	 */
+	public int getCachedKeyCount() {
+		return keys.size();
+	}
+
+	private static final class KeyType {
+		private final String name;
+		private final String valueType;
+		private final DataType dataType;
+
+		private KeyType(String name, String valueType, DataType dataType) {
+			this.name = name;
+			this.valueType = valueType;
+			this.dataType = dataType;
+		}
+	}
+}
@@ -16,7 +16,9 @@
 package com.jkoolcloud.tnt4j.logger.log4j;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.core.*;
@@ -25,6 +27,7 @@ import org.apache.logging.log4j.core.config.Property;
 import org.apache.logging.log4j.core.config.plugins.Plugin;
 import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
 
 import com.jkoolcloud.tnt4j.core.OpCompCode;
 import com.jkoolcloud.tnt4j.core.OpLevel;
@@ -44,6 +47,8 @@ import com.jkoolcloud.tnt4j.source.SourceType;
  * <li>TNT4J hash tags can be passed using log4j messages (using {@code #tag=value} convention) as well as
  * {@code MDC}.</li>
  * <li>All messages logged to this appender will be sent to all defined sinks as configured by TNT4J configuration.</li>
+ * <li>Appenders having same source name and type share single TNT4J tracker, which survives log4j
+ * reconfiguration.</li>
  * </ul>
  * <p>
  * This appender supports the following properties:
@@ -70,9 +75,109 @@ import com.jkoolcloud.tnt4j.source.SourceType;
  * <td valign=top>report jvm metrics on every specified number of seconds (only on logging activity)</td>
  * </tr>
  * <tr>
+ * <td valign=top><b>MetricsCooldown</b></td>
+ * <td valign=top>minimal number of milliseconds between two jvm metrics samples. Metrics are sampled by background
+ * collector and linked to triggering event by correlator (default: 1000)</td>
+ * </tr>
+ * <tr>
  * <td valign=top><b>MaxActivitySize</b></td>
  * <td valign=top>maximum size of any given activity before it gets flushed (default: 100)</td>
  * </tr>
+ * <tr>
+ * <td valign=top><b>StreamActivities</b></td>
+ * <td valign=top>send activity child events immediately with parent activity id, keeping only event aggregates in
+ * activity (true|false, default: false)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>LatencyInterval</b></td>
+ * <td valign=top>aggregate operation latencies and report p50/p90/p99/max snapshots every specified number of seconds
+ * (only on logging activity, default: 0 - disabled)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>LatencyThreshold</b></td>
+ * <td valign=top>when latency aggregation is enabled, forward individual timed events only if elapsed time is greater
+ * or equal to specified number of microseconds (default: -1 - forward all)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>IncludeLocation</b></td>
+ * <td valign=top>resolve caller method, file and line for every event (true|false, default: false). Without location,
+ * operation name is taken from event marker or logger name, and location from {@code #loc} hashtag</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>BatchSize</b></td>
+ * <td valign=top>maximum number of items batched before sending them to TNT4J. Batch is sent and sink flushed on log4j
+ * end of batch (AsyncLogger), when batch size is reached or when linger time elapses (default: 0 - disabled)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>LingerMillis</b></td>
+ * <td valign=top>maximum time batched items are held before being sent, in milliseconds. Upper bound of linger time
+ * when adaptive batching is enabled (default: 100)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>AdaptiveBatch</b></td>
+ * <td valign=top>tune batch size between 1 and BatchSize (AIMD) using measured batch send latency and queue depth
+ * (true|false, default: false)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>TargetLatencyMillis</b></td>
+ * <td valign=top>target batch send latency of adaptive batching, in milliseconds (default: 50)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>QueueCapacity</b></td>
+ * <td valign=top>maximum number of batched items of lower than ERROR severity. ERROR and more severe items use
+ * dedicated lane of 1000 items, which bypasses queued items (default: 10000, 0 - unbounded)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>DropPolicy</b></td>
+ * <td valign=top>item dropped when queue is full (DROP_NEWEST|DROP_OLDEST, default: DROP_NEWEST)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>LoggerGroups</b></td>
+ * <td valign=top>comma separated logger name prefixes with weights (e.g. {@code org=1,com.myco=4}). Each group gets own
+ * queue share and is drained in weighted round-robin order, so a flooding group does not starve others (default: none
+ * - single group)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>Destination</b></td>
+ * <td valign=top>nested elements defining additional TNT4J trackers (see {@link TNT4JDestination}). Items are built
+ * once and queued to every destination, each having own bounded queue, batching, failure policy and worker thread
+ * (default: none)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>PublisherBufferSize</b></td>
+ * <td valign=top>number of events buffered per subscriber of in-process events publisher (see
+ * {@link TNT4JManager#getPublisher()}). Events are dropped for subscribers having full buffer (default: 256)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>MaxAttributes</b></td>
+ * <td valign=top>maximum number of user defined hashtag attributes per message, attributes over the limit are skipped
+ * (default: 100, 0 - unlimited)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>MaxKeyLength</b></td>
+ * <td valign=top>maximum hashtag attribute key length, longer keys are truncated (default: 256, 0 - unlimited)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>MaxValueLength</b></td>
+ * <td valign=top>maximum hashtag attribute value length, longer values are truncated (default: 8192, 0 -
+ * unlimited)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>AttributeTypes</b></td>
+ * <td valign=top>comma separated data type hints ({@code key:type}, type is one of string, int, long, float, double,
+ * number, boolean) of hashtag attributes not annotated with data type, e.g. {@code bytes:long,hit:boolean} (default:
+ * none - numeric values are reported as Long, other values as String)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>FlightRecorderSize</b></td>
+ * <td valign=top>number of DEBUG/TRACE events kept in memory per thread instead of being sent. Kept events are sent
+ * only when ERROR (or more severe) or exception event occurs on the same thread (default: 0 - disabled)</td>
+ * </tr>
+ * <tr>
+ * <td valign=top><b>FlightRecorderKey</b></td>
+ * <td valign=top>ThreadContext key of correlator to keep flight recorder events per correlator instead of per thread
+ * (default: none)</td>
+ * </tr>
  * </table>
  *
  * <p>
@@ -261,11 +366,95 @@ public class TNT4JAppender extends AbstractAppender {
 		@PluginBuilderAttribute
 		private long metricsFrequency = 60;
 
+		@PluginBuilderAttribute
+		private long metricsCooldown = 1_000;
+
+		@PluginBuilderAttribute
+		private boolean streamActivities = false;
+
+		@PluginBuilderAttribute
+		private long latencyInterval = 0;
+
+		@PluginBuilderAttribute
+		private long latencyThreshold = -1;
+
+		@PluginBuilderAttribute
+		private boolean includeLocation = false;
+
+		@PluginBuilderAttribute
+		private int batchSize = 0;
+
+		@PluginBuilderAttribute
+		private long lingerMillis = TNT4JManager.DEFAULT_LINGER_MILLIS;
+
+		@PluginBuilderAttribute
+		private boolean adaptiveBatch = false;
+
+		@PluginBuilderAttribute
+		private long targetLatencyMillis = 50;
+
+		@PluginBuilderAttribute
+		private int queueCapacity = LaneQueue.DEFAULT_CAPACITY;
+
+		@PluginBuilderAttribute
+		private LaneQueue.DropPolicy dropPolicy = LaneQueue.DropPolicy.DROP_NEWEST;
+
+		@PluginBuilderAttribute
+		private String loggerGroups;
+
+		@PluginElement("Destinations")
+		private TNT4JDestination[] destinations;
+
+		@PluginBuilderAttribute
+		private int publisherBufferSize = Flow.defaultBufferSize();
+
+		@PluginBuilderAttribute
+		private int maxAttributes = 100;
+
+		@PluginBuilderAttribute
+		private int maxKeyLength = 256;
+
+		@PluginBuilderAttribute
+		private int maxValueLength = 8_192;
+
+		@PluginBuilderAttribute
+		private String attributeTypes;
+
+		@PluginBuilderAttribute
+		private int flightRecorderSize = 0;
+
+		@PluginBuilderAttribute
+		private String flightRecorderKey;
+
 		@Override
 		public TNT4JAppender build() {
-			TNT4JManager trackerManager = new TNT4JManager(getConfiguration(), getConfiguration().getLoggerContext(),
-					getName(), sourceName, sourceType, snapCategory, maxActivitySize, metricsOnException,
-					metricsFrequency);
+			TNT4JManager.FactoryData data = new TNT4JManager.FactoryData(getConfiguration(),
+					sourceName == null ? getName() : sourceName, sourceType) //
+							.setSnapCategory(snapCategory) //
+							.setMaxActivitySize(maxActivitySize) //
+							.setStreamActivities(streamActivities) //
+							.setMetricsOnException(metricsOnException) //
+							.setMetricsFrequency(metricsFrequency) //
+							.setMetricsCooldown(metricsCooldown) //
+							.setLatencyInterval(latencyInterval) //
+							.setLatencyThreshold(latencyThreshold) //
+							.setIncludeLocation(includeLocation) //
+							.setBatchSize(batchSize) //
+							.setLingerMillis(lingerMillis) //
+							.setAdaptiveBatch(adaptiveBatch) //
+							.setTargetLatencyMillis(targetLatencyMillis) //
+							.setQueueCapacity(queueCapacity) //
+							.setDropPolicy(dropPolicy) //
+							.setLoggerGroups(loggerGroups) //
+							.setDestinations(destinations == null ? null : Arrays.asList(destinations)) //
+							.setPublisherBufferSize(publisherBufferSize) //
+							.setMaxAttributes(maxAttributes) //
+							.setMaxKeyLength(maxKeyLength) //
+							.setMaxValueLength(maxValueLength) //
+							.setAttributeTypes(attributeTypes) //
+							.setFlightRecorderSize(flightRecorderSize) //
+							.setFlightRecorderKey(flightRecorderKey);
+			TNT4JManager trackerManager = TNT4JManager.getManager(data);
 			return new TNT4JAppender(getName(), getFilter(), getLayout(), isIgnoreExceptions(), trackerManager,
 					getPropertyArray());
 		}
@@ -298,6 +487,86 @@ public class TNT4JAppender extends AbstractAppender {
 			return metricsFrequency;
 		}
 
+		public boolean isStreamActivities() {
+			return streamActivities;
+		}
+
+		public long getMetricsCooldown() {
+			return metricsCooldown;
+		}
+
+		public long getLatencyInterval() {
+			return latencyInterval;
+		}
+
+		public long getLatencyThreshold() {
+			return latencyThreshold;
+		}
+
+		public boolean isIncludeLocation() {
+			return includeLocation;
+		}
+
+		public int getBatchSize() {
+			return batchSize;
+		}
+
+		public long getLingerMillis() {
+			return lingerMillis;
+		}
+
+		public boolean isAdaptiveBatch() {
+			return adaptiveBatch;
+		}
+
+		public long getTargetLatencyMillis() {
+			return targetLatencyMillis;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public LaneQueue.DropPolicy getDropPolicy() {
+			return dropPolicy;
+		}
+
+		public String getLoggerGroups() {
+			return loggerGroups;
+		}
+
+		public TNT4JDestination[] getDestinations() {
+			return destinations;
+		}
+
+		public int getPublisherBufferSize() {
+			return publisherBufferSize;
+		}
+
+		public int getMaxAttributes() {
+			return maxAttributes;
+		}
+
+		public int getMaxKeyLength() {
+			return maxKeyLength;
+		}
+
+		public int getMaxValueLength() {
+			return maxValueLength;
+		}
+
+		public String getAttributeTypes() {
+			return attributeTypes;
+		}
+
+		public int getFlightRecorderSize() {
+			return flightRecorderSize;
+		}
+
+		public String getFlightRecorderKey() {
+			return flightRecorderKey;
+		}
+
 		public B setSourceName(String sourceName) {
 			this.sourceName = sourceName;
 			return asBuilder();
@@ -327,6 +596,106 @@ public class TNT4JAppender extends AbstractAppender {
 			this.metricsFrequency = metricsFrequency;
 			return asBuilder();
 		}
+
+		public B setStreamActivities(boolean streamActivities) {
+			this.streamActivities = streamActivities;
+			return asBuilder();
+		}
+
+		public B setMetricsCooldown(long metricsCooldown) {
+			this.metricsCooldown = metricsCooldown;
+			return asBuilder();
+		}
+
+		public B setLatencyInterval(long latencyInterval) {
+			this.latencyInterval = latencyInterval;
+			return asBuilder();
+		}
+
+		public B setLatencyThreshold(long latencyThreshold) {
+			this.latencyThreshold = latencyThreshold;
+			return asBuilder();
+		}
+
+		public B setIncludeLocation(boolean includeLocation) {
+			this.includeLocation = includeLocation;
+			return asBuilder();
+		}
+
+		public B setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return asBuilder();
+		}
+
+		public B setLingerMillis(long lingerMillis) {
+			this.lingerMillis = lingerMillis;
+			return asBuilder();
+		}
+
+		public B setAdaptiveBatch(boolean adaptiveBatch) {
+			this.adaptiveBatch = adaptiveBatch;
+			return asBuilder();
+		}
+
+		public B setTargetLatencyMillis(long targetLatencyMillis) {
+			this.targetLatencyMillis = targetLatencyMillis;
+			return asBuilder();
+		}
+
+		public B setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+			return asBuilder();
+		}
+
+		public B setDropPolicy(LaneQueue.DropPolicy dropPolicy) {
+			this.dropPolicy = dropPolicy;
+			return asBuilder();
+		}
+
+		public B setLoggerGroups(String loggerGroups) {
+			this.loggerGroups = loggerGroups;
+			return asBuilder();
+		}
+
+		public B setDestinations(TNT4JDestination... destinations) {
+			this.destinations = destinations;
+			return asBuilder();
+		}
+
+		public B setPublisherBufferSize(int publisherBufferSize) {
+			this.publisherBufferSize = publisherBufferSize;
+			return asBuilder();
+		}
+
+		public B setMaxAttributes(int maxAttributes) {
+			this.maxAttributes = maxAttributes;
+			return asBuilder();
+		}
+
+		public B setMaxKeyLength(int maxKeyLength) {
+			this.maxKeyLength = maxKeyLength;
+			return asBuilder();
+		}
+
+		public B setMaxValueLength(int maxValueLength) {
+			this.maxValueLength = maxValueLength;
+			return asBuilder();
+		}
+
+		public B setAttributeTypes(String attributeTypes) {
+			this.attributeTypes = attributeTypes;
+			return asBuilder();
+		}
+
+		public B setFlightRecorderSize(int flightRecorderSize) {
+			this.flightRecorderSize = flightRecorderSize;
+			return asBuilder();
+		}
+
+		public B setFlightRecorderKey(String flightRecorderKey) {
+			this.flightRecorderKey = flightRecorderKey;
+			return asBuilder();
+		}
 	}
 
 	/**
@@ -364,19 +733,39 @@ public class TNT4JAppender extends AbstractAppender {
 		this.manager = Objects.requireNonNull(manager, "manager");
 	}
 
+	/**
+	 * Returns TNT4J manager used by this appender.
+	 *
+	 * @return TNT4J manager instance
+	 */
+	public TNT4JManager getManager() {
+		return manager;
+	}
+
 	@Override
 	public final void start() {
 		super.start();
 		manager.startup();
 	}
 
+	@Override
+	public boolean requiresLocation() {
+		return manager.isIncludeLocation() || super.requiresLocation();
+	}
+
 	@Override
 	public void append(LogEvent event) {
+		Object jfr = JfrEvents.begin(JfrEvents.Stage.RECEIVE);
+		int msgLength = 0;
 		try {
-			manager.tnt(event);
+			msgLength = manager.tnt(event);
 		} catch (Exception exc) {
 			error("Failed to log event in appender [" + getName() + "]", event, exc);
 		}
+		if (jfr != null) {
+			// message length as formatted by manager, message is not formatted again
+			JfrEvents.commit(jfr, event.getLoggerName(), event.getLevel().name(), msgLength);
+		}
 	}
 
 	@Override
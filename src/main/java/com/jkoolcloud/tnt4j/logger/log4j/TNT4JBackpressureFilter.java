@@ -0,0 +1,305 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.*;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.config.plugins.PluginConfiguration;
+import org.apache.logging.log4j.core.filter.AbstractFilter;
+import org.apache.logging.log4j.message.Message;
+
+/**
+ * Log4j filter degrading logged events levels when TNT4J pipeline of referenced {@link TNT4JAppender} gets saturated.
+ * <p>
+ * Pipeline is considered saturated when appender queue depth reaches {@code highQueueDepth} or average sink send
+ * latency reaches {@code highLatencyMillis}, and is considered recovered when both queue depth and latency drop to or
+ * below {@code lowQueueDepth} and {@code lowLatencyMillis}. While saturated, events less specific than {@code level}
+ * get {@code onMismatch} result (default {@code DENY}), all other events get {@code onMatch} result (default
+ * {@code NEUTRAL}). Configured as context-wide filter, events are rejected before log4j {@code LogEvent} is created.
+ * <p>
+ * Appender queue depth is always {@code 0} when appender batching is off, since items are then sent by logging
+ * thread, so {@code highQueueDepth} applies only to batching appenders. Send latency is a moving average decaying
+ * while sink is idle, so pipeline is considered recovered once slow sends stop.
+ * <p>
+ * Sample configuration:
+ * <p>
+ * {@code <Tnt4jBackpressureFilter appender="tnt4j" level="WARN" highQueueDepth="5000" lowQueueDepth="1000"
+ * highLatencyMillis="20" lowLatencyMillis="5"/>}
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager#getQueueDepth()
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager#getSendLatencyNanos()
+ */
+@Plugin(name = "Tnt4jBackpressureFilter", category = Node.CATEGORY, elementType = Filter.ELEMENT_TYPE, printObject = true)
+public class TNT4JBackpressureFilter extends AbstractFilter {
+
+	private final Configuration configuration;
+	private final String appenderName;
+	private final Level level;
+	private final int highQueueDepth;
+	private final int lowQueueDepth;
+	private final long highLatencyNanos;
+	private final long lowLatencyNanos;
+
+	private volatile TNT4JManager manager;
+	private volatile boolean saturated;
+
+	public static class Builder extends AbstractFilterBuilder<Builder>
+			implements org.apache.logging.log4j.core.util.Builder<TNT4JBackpressureFilter> {
+
+		@PluginConfiguration
+		private Configuration configuration;
+
+		@PluginBuilderAttribute
+		private String appender;
+
+		@PluginBuilderAttribute
+		private Level level = Level.WARN;
+
+		@PluginBuilderAttribute
+		private int highQueueDepth = 0;
+
+		@PluginBuilderAttribute
+		private int lowQueueDepth = 0;
+
+		@PluginBuilderAttribute
+		private long highLatencyMillis = 0;
+
+		@PluginBuilderAttribute
+		private long lowLatencyMillis = 0;
+
+		@Override
+		public TNT4JBackpressureFilter build() {
+			return new TNT4JBackpressureFilter(configuration, appender, level, highQueueDepth,
+					Math.min(lowQueueDepth, highQueueDepth), highLatencyMillis,
+					Math.min(lowLatencyMillis, highLatencyMillis), getOnMatch(), getOnMismatch());
+		}
+
+		public Builder setAppender(String appender) {
+			this.appender = appender;
+			return asBuilder();
+		}
+
+		public Builder setLevel(Level level) {
+			this.level = level;
+			return asBuilder();
+		}
+
+		public Builder setHighQueueDepth(int highQueueDepth) {
+			this.highQueueDepth = highQueueDepth;
+			return asBuilder();
+		}
+
+		public Builder setLowQueueDepth(int lowQueueDepth) {
+			this.lowQueueDepth = lowQueueDepth;
+			return asBuilder();
+		}
+
+		public Builder setHighLatencyMillis(long highLatencyMillis) {
+			this.highLatencyMillis = highLatencyMillis;
+			return asBuilder();
+		}
+
+		public Builder setLowLatencyMillis(long lowLatencyMillis) {
+			this.lowLatencyMillis = lowLatencyMillis;
+			return asBuilder();
+		}
+
+		public Builder setConfiguration(Configuration configuration) {
+			this.configuration = configuration;
+			return asBuilder();
+		}
+	}
+
+	/**
+	 * @return a builder for a TNT4JBackpressureFilter.
+	 */
+	@PluginBuilderFactory
+	public static Builder newBuilder() {
+		return new Builder().setOnMatch(Result.NEUTRAL).setOnMismatch(Result.DENY);
+	}
+
+	/**
+	 * Create a filter instance.
+	 *
+	 * @param configuration
+	 *            log4j configuration used to resolve referenced appender
+	 * @param appenderName
+	 *            name of referenced TNT4J appender
+	 * @param level
+	 *            least specific level passed while pipeline is saturated
+	 * @param highQueueDepth
+	 *            queue depth marking pipeline saturated, {@code 0} - queue depth is not checked
+	 * @param lowQueueDepth
+	 *            queue depth marking pipeline recovered
+	 * @param highLatencyMillis
+	 *            sink send latency marking pipeline saturated, {@code 0} - latency is not checked
+	 * @param lowLatencyMillis
+	 *            sink send latency marking pipeline recovered
+	 * @param onMatch
+	 *            result for events passing the filter
+	 * @param onMismatch
+	 *            result for events rejected while pipeline is saturated
+	 */
+	protected TNT4JBackpressureFilter(Configuration configuration, String appenderName, Level level,
+			int highQueueDepth, int lowQueueDepth, long highLatencyMillis, long lowLatencyMillis, Result onMatch,
+			Result onMismatch) {
+		super(onMatch, onMismatch);
+
+		this.configuration = configuration;
+		this.appenderName = appenderName;
+		this.level = level == null ? Level.WARN : level;
+		this.highQueueDepth = highQueueDepth;
+		this.lowQueueDepth = lowQueueDepth;
+		this.highLatencyNanos = TimeUnit.MILLISECONDS.toNanos(highLatencyMillis);
+		this.lowLatencyNanos = TimeUnit.MILLISECONDS.toNanos(lowLatencyMillis);
+	}
+
+	/**
+	 * Checks whether TNT4J pipeline of referenced appender is saturated, applying hysteresis thresholds.
+	 *
+	 * @return {@code true} if pipeline is saturated, {@code false} - otherwise
+	 */
+	public boolean isSaturated() {
+		TNT4JManager m = getManager();
+		if (m == null) {
+			return false;
+		}
+		int depth = m.getQueueDepth();
+		long latency = m.getSendLatencyNanos();
+		boolean depthCheck = highQueueDepth > 0;
+		boolean latencyCheck = highLatencyNanos > 0;
+		if (saturated) {
+			if ((!depthCheck || depth <= lowQueueDepth) && (!latencyCheck || latency <= lowLatencyNanos)) {
+				saturated = false;
+			}
+		} else if ((depthCheck && depth >= highQueueDepth) || (latencyCheck && latency >= highLatencyNanos)) {
+			saturated = true;
+		}
+		return saturated;
+	}
+
+	private TNT4JManager getManager() {
+		TNT4JManager m = manager;
+		if (m == null && configuration != null && appenderName != null) {
+			Appender appender = configuration.getAppender(appenderName);
+			if (appender instanceof TNT4JAppender) {
+				m = ((TNT4JAppender) appender).getManager();
+				manager = m;
+			}
+		}
+		return m;
+	}
+
+	private Result filter(Level lvl) {
+		if (lvl != null && !lvl.isMoreSpecificThan(level) && isSaturated()) {
+			return onMismatch;
+		}
+		return onMatch;
+	}
+
+	@Override
+	public Result filter(LogEvent event) {
+		return filter(event.getLevel());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, Message msg, Throwable t) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, Object msg, Throwable t) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object... params) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5, Object p6) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5, Object p6, Object p7) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5, Object p6, Object p7, Object p8) {
+		return filter(level);
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5, Object p6, Object p7, Object p8, Object p9) {
+		return filter(level);
+	}
+
+	@Override
+	public String toString() {
+		return "appender=" + appenderName + ", level=" + level + ", saturated=" + saturated;
+	}
+}
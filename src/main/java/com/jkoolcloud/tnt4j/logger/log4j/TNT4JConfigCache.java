@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jkoolcloud.tnt4j.config.ConfigFactory;
+import com.jkoolcloud.tnt4j.config.TrackerConfig;
+import com.jkoolcloud.tnt4j.config.TrackerConfigStore;
+import com.jkoolcloud.tnt4j.source.SourceType;
+
+/**
+ * JVM wide cache of parsed TNT4J configuration ({@code tnt4j.properties}) stanzas. Configuration file is parsed once,
+ * by the first tracker created for it, and stanzas for all other sources are resolved from the parsed copy, which
+ * is invalidated when configuration file modification time changes. Cache is safe to be used by concurrently starting
+ * appenders: configuration file is parsed only once.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager#startup()
+ */
+public final class TNT4JConfigCache {
+	private static final Map<String, ConfigEntry> CACHE = new ConcurrentHashMap<>();
+
+	private TNT4JConfigCache() {
+	}
+
+	/**
+	 * Obtain tracker configuration for given source name and type, using parsed configuration stanzas cache.
+	 *
+	 * @param cFactory
+	 *            configuration factory used to build tracker configuration
+	 * @param sourceName
+	 *            source name
+	 * @param sourceType
+	 *            source type
+	 * @return tracker configuration for given source
+	 */
+	public static TrackerConfig getConfig(ConfigFactory cFactory, String sourceName, SourceType sourceType) {
+		String cfgPath = System.getProperty(TrackerConfigStore.TNT4J_PROPERTIES_KEY,
+				TrackerConfigStore.TNT4J_PROPERTIES);
+		long modified = getLastModified(cfgPath);
+		String key = cFactory.getClass().getName() + "@" + cfgPath;
+
+		TrackerConfig[] parsed = new TrackerConfig[1];
+		ConfigEntry entry = CACHE.compute(key, (k, e) -> {
+			if (e != null && e.modified == modified) {
+				return e;
+			}
+			TrackerConfig config = cFactory.getConfig(sourceName, sourceType);
+			parsed[0] = config;
+			Map<String, Properties> stanzas = config instanceof TrackerConfigStore
+					? ((TrackerConfigStore) config).getConfigMap() : null;
+			return stanzas == null ? null : new ConfigEntry(modified, stanzas);
+		});
+
+		if (parsed[0] != null) {
+			return parsed[0];
+		}
+		return entry == null ? cFactory.getConfig(sourceName, sourceType)
+				: cFactory.getConfig(sourceName, sourceType, entry.copyStanzas());
+	}
+
+	/**
+	 * Drops all cached configurations.
+	 */
+	public static void clear() {
+		CACHE.clear();
+	}
+
+	private static long getLastModified(String cfgPath) {
+		try {
+			Path path = Paths.get(cfgPath);
+			return Files.isRegularFile(path) ? Files.getLastModifiedTime(path).toMillis() : -1;
+		} catch (InvalidPathException exc) {
+			return -1; // URL or classpath resource: never invalidated
+		} catch (Exception exc) {
+			return 0;
+		}
+	}
+
+	private static final class ConfigEntry {
+		private final long modified;
+		private final Map<String, Properties> stanzas;
+
+		private ConfigEntry(long modified, Map<String, Properties> stanzas) {
+			this.modified = modified;
+			Map<String, Properties> copy = new LinkedHashMap<>(stanzas.size());
+			for (Map.Entry<String, Properties> stanza : stanzas.entrySet()) {
+				copy.put(stanza.getKey(), copy(stanza.getValue()));
+			}
+			this.stanzas = Collections.unmodifiableMap(copy);
+		}
+
+		// tracker configuration gets its own copy, so it can not alter cached stanzas
+		private Map<String, Properties> copyStanzas() {
+			Map<String, Properties> copy = new LinkedHashMap<>(stanzas.size());
+			for (Map.Entry<String, Properties> stanza : stanzas.entrySet()) {
+				copy.put(stanza.getKey(), copy(stanza.getValue()));
+			}
+			return copy;
+		}
+
+		private static Properties copy(Properties props) {
+			Properties copy = new Properties();
+			copy.putAll(props);
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.Objects;
+
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.config.plugins.validation.constraints.Required;
+
+import com.jkoolcloud.tnt4j.source.SourceType;
+
+/**
+ * Additional TNT4J destination of {@link TNT4JAppender}. Tracking items built by appender once are also sent to every
+ * destination tracker, configured by destination source name and type (TNT4J configuration stanza). Every destination
+ * has own bounded queue, batching and failure policy and is served by own worker thread, so slow destination never
+ * delays logging thread or other destinations. With {@code adaptiveBatch="true"}, batch size (up to
+ * {@code maxBatchSize}) and linger time (up to {@code lingerMillis}) are tuned continuously to keep batch send latency
+ * under {@code targetLatencyMillis} (see {@link AdaptiveBatch}).
+ * <p>
+ * Sample log4j configuration:
+ * <p>
+ * {@code <Tnt4j name="tnt4j" sourceName="com.log4j.Local" sourceType="APPL">}
+ * <p>
+ * {@code   <Destination name="remote" sourceName="com.log4j.Remote" batchSize="100" failurePolicy="RETRY"/>}
+ * <p>
+ * {@code </Tnt4j>}
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.DestinationWorker
+ */
+@Plugin(name = "Destination", category = Core.CATEGORY_NAME, printObject = true)
+public final class TNT4JDestination {
+	/**
+	 * Defines what happens with batch of items destination tracker failed to send.
+	 */
+	public enum FailurePolicy {
+		/**
+		 * Items of failed batch not accepted by sink are dropped
+		 */
+		DROP,
+		/**
+		 * Items of failed batch not accepted by sink are retried after retry interval, while new items are queued (and
+		 * dropped by queue drop policy once queue is full)
+		 */
+		RETRY
+	}
+
+	private final String name;
+	private final String sourceName;
+	private final SourceType sourceType;
+	private final int queueCapacity;
+	private final LaneQueue.DropPolicy dropPolicy;
+	private final int batchSize;
+	private final long lingerMillis;
+	private final boolean adaptiveBatch;
+	private final int maxBatchSize;
+	private final long targetLatencyMillis;
+	private final FailurePolicy failurePolicy;
+	private final long retryMillis;
+
+	private TNT4JDestination(Builder builder) {
+		this.name = builder.name;
+		this.sourceName = builder.sourceName == null ? builder.name : builder.sourceName;
+		this.sourceType = builder.sourceType;
+		this.queueCapacity = builder.queueCapacity;
+		this.dropPolicy = builder.dropPolicy;
+		this.batchSize = Math.max(1, builder.batchSize);
+		this.lingerMillis = Math.max(1, builder.lingerMillis);
+		this.adaptiveBatch = builder.adaptiveBatch;
+		this.maxBatchSize = Math.max(this.batchSize, builder.maxBatchSize);
+		this.targetLatencyMillis = Math.max(1, builder.targetLatencyMillis);
+		this.failurePolicy = builder.failurePolicy;
+		this.retryMillis = Math.max(1, builder.retryMillis);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSourceName() {
+		return sourceName;
+	}
+
+	public SourceType getSourceType() {
+		return sourceType;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public LaneQueue.DropPolicy getDropPolicy() {
+		return dropPolicy;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getLingerMillis() {
+		return lingerMillis;
+	}
+
+	public boolean isAdaptiveBatch() {
+		return adaptiveBatch;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public long getTargetLatencyMillis() {
+		return targetLatencyMillis;
+	}
+
+	public FailurePolicy getFailurePolicy() {
+		return failurePolicy;
+	}
+
+	public long getRetryMillis() {
+		return retryMillis;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof TNT4JDestination)) {
+			return false;
+		}
+		TNT4JDestination that = (TNT4JDestination) o;
+		return queueCapacity == that.queueCapacity && batchSize == that.batchSize
+				&& lingerMillis == that.lingerMillis && retryMillis == that.retryMillis
+				&& adaptiveBatch == that.adaptiveBatch && maxBatchSize == that.maxBatchSize
+				&& targetLatencyMillis == that.targetLatencyMillis
+				&& Objects.equals(name, that.name) && Objects.equals(sourceName, that.sourceName)
+				&& sourceType == that.sourceType && dropPolicy == that.dropPolicy
+				&& failurePolicy == that.failurePolicy;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(name, sourceName, sourceType, queueCapacity, dropPolicy, batchSize, lingerMillis,
+				adaptiveBatch, maxBatchSize, targetLatencyMillis, failurePolicy, retryMillis);
+	}
+
+	@Override
+	public String toString() {
+		return "Destination{" //
+				+ "name=" + name //
+				+ ", sourceName=" + sourceName //
+				+ ", sourceType=" + sourceType //
+				+ ", queueCapacity=" + queueCapacity //
+				+ ", dropPolicy=" + dropPolicy //
+				+ ", batchSize=" + batchSize //
+				+ ", lingerMillis=" + lingerMillis //
+				+ ", adaptiveBatch=" + adaptiveBatch //
+				+ ", maxBatchSize=" + maxBatchSize //
+				+ ", targetLatencyMillis=" + targetLatencyMillis //
+				+ ", failurePolicy=" + failurePolicy //
+				+ ", retryMillis=" + retryMillis //
+				+ "}";
+	}
+
+	public static class Builder implements org.apache.logging.log4j.core.util.Builder<TNT4JDestination> {
+
+		@PluginBuilderAttribute
+		@Required(message = "No name provided for Destination")
+		private String name;
+
+		@PluginBuilderAttribute
+		private String sourceName;
+
+		@PluginBuilderAttribute
+		private SourceType sourceType = SourceType.APPL;
+
+		@PluginBuilderAttribute
+		private int queueCapacity = LaneQueue.DEFAULT_CAPACITY;
+
+		@PluginBuilderAttribute
+		private LaneQueue.DropPolicy dropPolicy = LaneQueue.DropPolicy.DROP_OLDEST;
+
+		@PluginBuilderAttribute
+		private int batchSize = 100;
+
+		@PluginBuilderAttribute
+		private long lingerMillis = 100;
+
+		@PluginBuilderAttribute
+		private boolean adaptiveBatch = false;
+
+		@PluginBuilderAttribute
+		private int maxBatchSize = 1_000;
+
+		@PluginBuilderAttribute
+		private long targetLatencyMillis = 50;
+
+		@PluginBuilderAttribute
+		private FailurePolicy failurePolicy = FailurePolicy.DROP;
+
+		@PluginBuilderAttribute
+		private long retryMillis = 1_000;
+
+		@Override
+		public TNT4JDestination build() {
+			return new TNT4JDestination(this);
+		}
+
+		public Builder setName(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder setSourceName(String sourceName) {
+			this.sourceName = sourceName;
+			return this;
+		}
+
+		public Builder setSourceType(SourceType sourceType) {
+			this.sourceType = sourceType;
+			return this;
+		}
+
+		public Builder setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		public Builder setDropPolicy(LaneQueue.DropPolicy dropPolicy) {
+			this.dropPolicy = dropPolicy;
+			return this;
+		}
+
+		public Builder setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		public Builder setLingerMillis(long lingerMillis) {
+			this.lingerMillis = lingerMillis;
+			return this;
+		}
+
+		public Builder setAdaptiveBatch(boolean adaptiveBatch) {
+			this.adaptiveBatch = adaptiveBatch;
+			return this;
+		}
+
+		public Builder setMaxBatchSize(int maxBatchSize) {
+			this.maxBatchSize = maxBatchSize;
+			return this;
+		}
+
+		public Builder setTargetLatencyMillis(long targetLatencyMillis) {
+			this.targetLatencyMillis = targetLatencyMillis;
+			return this;
+		}
+
+		public Builder setFailurePolicy(FailurePolicy failurePolicy) {
+			this.failurePolicy = failurePolicy;
+			return this;
+		}
+
+		public Builder setRetryMillis(long retryMillis) {
+			this.retryMillis = retryMillis;
+			return this;
+		}
+	}
+
+	/**
+	 * @return a builder for a TNT4JDestination.
+	 */
+	@PluginBuilderFactory
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+}
@@ -16,19 +16,30 @@
 
 package com.jkoolcloud.tnt4j.logger.log4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.appender.AbstractManager;
+import org.apache.logging.log4j.core.appender.ManagerFactory;
 import org.apache.logging.log4j.core.config.Configuration;
 import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.apache.logging.log4j.core.time.Instant;
 import org.apache.logging.log4j.message.Message;
 
 import com.jkoolcloud.tnt4j.TrackingLogger;
@@ -39,7 +50,6 @@ import com.jkoolcloud.tnt4j.core.*;
 import com.jkoolcloud.tnt4j.logger.AppenderConstants;
 import com.jkoolcloud.tnt4j.logger.AppenderTools;
 import com.jkoolcloud.tnt4j.source.SourceType;
-import com.jkoolcloud.tnt4j.tracker.TimeTracker;
 import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
 import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
 import com.jkoolcloud.tnt4j.utils.Utils;
@@ -54,8 +64,34 @@ import com.jkoolcloud.tnt4j.utils.Utils;
 public class TNT4JManager extends AbstractManager implements AppenderConstants {
 
 	private static final String UNKNOWN_VALUE = "UNKNOWN";
+	private static final int MAX_LOCATIONS_CACHE_SIZE = 10_000;
+	private static final int MAX_ACTIVITY_STATS = 10_000;
+	private static final Map<StackTraceElement, String> LOCATIONS_CACHE = new ConcurrentHashMap<>();
 
-	private final Configuration configuration;
+	private static final TNT4JManagerFactory FACTORY = new TNT4JManagerFactory();
+
+	/**
+	 * Default maximum time batched items are held before being sent, in milliseconds
+	 */
+	public static final long DEFAULT_LINGER_MILLIS = 100;
+	/**
+	 * Time after which send latency average of idle sink is halved, in nanoseconds
+	 */
+	private static final long SEND_LATENCY_HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(1);
+	/**
+	 * Default time to wait for pending items to be sent and tracker closed on release, in milliseconds
+	 */
+	public static final long DEFAULT_RELEASE_TIMEOUT_MILLIS = 10_000;
+	// time of last event processed by thread, in microseconds since epoch
+	private static final ThreadLocal<long[]> LAST_EVENT_USEC = ThreadLocal.withInitial(() -> new long[1]);
+
+	private static final String[] RESERVED_KEYS = { PARAM_BEGIN_LABEL, PARAM_END_LABEL, PARAM_APPL_LABEL,
+			PARAM_USER_LABEL, PARAM_CORRELATOR_LABEL, PARAM_TAG_LABEL, PARAM_LOCATION_LABEL, PARAM_OP_NAME_LABEL,
+			PARAM_OP_TYPE_LABEL, PARAM_RESOURCE_LABEL, PARAM_MSG_DATA_LABEL, PARAM_EXCEPTION_LABEL,
+			PARAM_SEVERITY_LABEL, PARAM_COMP_CODE_LABEL, PARAM_REASON_CODE_LABEL, PARAM_START_TIME_LABEL,
+			PARAM_END_TIME_LABEL, PARAM_ELAPSED_TIME_LABEL, PARAM_AGE_TIME_LABEL };
+
+	private volatile Configuration configuration;
 
 	private TrackingLogger logger;
 
@@ -64,8 +100,49 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 	private String snapCategory;
 
 	private int maxActivitySize;
+	private boolean streamActivities;
 	private boolean metricsOnException;
 	private long metricsFrequency;
+	private long metricsCooldown;
+	private long latencyInterval;
+	private long latencyThreshold = -1;
+	private boolean includeLocation;
+	private int batchSize;
+	private long lingerMillis = DEFAULT_LINGER_MILLIS;
+	private volatile AdaptiveBatch adaptiveBatch;
+	private FlightRecorder flightRecorder;
+	private volatile HashtagParser hashtagParser = new HashtagParser(0, 0, 0, RESERVED_KEYS);
+	private volatile PropertyConverter propertyConverter = new PropertyConverter(null);
+
+	private volatile LaneQueue queue = new LaneQueue(LaneQueue.DEFAULT_CAPACITY, LaneQueue.DropPolicy.DROP_NEWEST);
+	private volatile LoggerGroups loggerGroups = LoggerGroups.NONE;
+	private final Set<TrackingActivity> openActivities = ConcurrentHashMap.newKeySet();
+	private final Map<String, ActivityStats> activityStats = new ConcurrentHashMap<>();
+	private final ActivityListener statsAttacher = new ActivityListener() {
+		@Override
+		public void started(Activity activity) {
+		}
+
+		@Override
+		public void stopped(Activity activity) {
+			attachStats(activity);
+		}
+	};
+	private volatile long sendLatencyNanos;
+	private volatile long lastSendNanos = System.nanoTime();
+	private volatile long lastFlushNanos = System.nanoTime();
+	private volatile Thread lingerFlusher;
+	private volatile int lastReleaseFlushed;
+	private volatile int lastReleaseAbandoned;
+
+	private LatencyAggregator latencyAggregator;
+	private volatile JvmMetricsCollector metricsCollector;
+	private FactoryData appliedData;
+
+	private List<TNT4JDestination> destinations = Collections.emptyList();
+	private volatile List<DestinationWorker> workers = Collections.emptyList();
+	private volatile TrackingEventPublisher publisher;
+	private int publisherBufferSize = Flow.defaultBufferSize();
 
 	private ConfigFactory cFactory = DefaultConfigFactory.getInstance();
 	private Map<String, Properties> cProperties = null;
@@ -110,6 +187,19 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 		this.metricsFrequency = metricsFrequency;
 	}
 
+	/**
+	 * Obtains TNT4J manager instance shared by appenders having same tracker source name and type. Manager is created
+	 * if none exists yet, otherwise existing manager settings are updated using provided factory data. Managers are
+	 * reference counted, so tracker of unchanged appender survives log4j reconfiguration.
+	 *
+	 * @param data
+	 *            manager factory data
+	 * @return TNT4J manager instance
+	 */
+	public static TNT4JManager getManager(FactoryData data) {
+		return getManager(data.getManagerName(), FACTORY, data);
+	}
+
 	/**
 	 * Returns this manager bound appender configuration.
 	 * 
@@ -120,17 +210,103 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 	}
 
 	/**
-	 * Make the Manager available for use.
+	 * Updates this manager settings using data of appender built by log4j configuration. Settings of appender from new
+	 * (reloaded) configuration replace current ones. Appenders of same configuration sharing this manager (having same
+	 * tracker source) must have same settings: settings of first appender are kept and conflicting settings are
+	 * reported to status logger and ignored.
+	 *
+	 * @param data
+	 *            manager factory data
 	 */
-	public void startup() {
+	@Override
+	public synchronized void updateData(Object data) {
+		if (!(data instanceof FactoryData)) {
+			return;
+		}
+		FactoryData fData = (FactoryData) data;
+		if (appliedData != null && fData.configuration == appliedData.configuration
+				&& !fData.hasSameSettings(appliedData)) {
+			logWarn("Appenders sharing tracker instance=" + getName()
+					+ " have conflicting settings, keeping " + appliedData + ", ignoring " + fData, null);
+			return;
+		}
+		applyData(fData);
+	}
+
+	/**
+	 * Applies appender provided settings to this manager. If manager is already started and snapshot category or
+	 * metrics cooldown has changed, JVM metrics collector is restarted.
+	 *
+	 * @param data
+	 *            manager factory data
+	 */
+	protected synchronized void applyData(FactoryData data) {
+		String oldCategory = snapCategory;
+		long oldCooldown = metricsCooldown;
+
+		appliedData = data;
+		configuration = Objects.requireNonNull(data.configuration);
+		snapCategory = data.snapCategory;
+		maxActivitySize = data.maxActivitySize;
+		streamActivities = data.streamActivities;
+		metricsOnException = data.metricsOnException;
+		metricsFrequency = data.metricsFrequency;
+		metricsCooldown = data.metricsCooldown;
+		setLatencyInterval(data.latencyInterval);
+		latencyThreshold = data.latencyThreshold;
+		includeLocation = data.includeLocation;
+		batchSize = data.batchSize;
+		lingerMillis = Math.max(1, data.lingerMillis);
+		setAdaptiveBatch(data.adaptiveBatch, data.targetLatencyMillis);
+		setLoggerGroups(data.loggerGroups);
+		setQueue(data.queueCapacity, data.dropPolicy);
+		setFlightRecorder(data.flightRecorderSize, data.flightRecorderKey);
+		setDestinations(data.destinations);
+		publisherBufferSize = data.publisherBufferSize;
+		setAttributeLimits(data.maxAttributes, data.maxKeyLength, data.maxValueLength);
+		setAttributeTypes(data.attributeTypes);
+
+		if (isReady() && (!Objects.equals(oldCategory, snapCategory) || oldCooldown != metricsCooldown)) {
+			startMetricsCollector();
+		}
+	}
+
+	/**
+	 * Starts JVM metrics collector using current snapshot category and metrics cooldown, stopping previous collector
+	 * if any.
+	 */
+	private synchronized void startMetricsCollector() {
+		stopMetricsCollector();
+		metricsCollector = new JvmMetricsCollector(getName(), logger, snapCategory, metricsCooldown, this::send);
+	}
+
+	private synchronized void stopMetricsCollector() {
+		if (metricsCollector != null) {
+			metricsCollector.stop();
+			metricsCollector = null;
+		}
+	}
+
+	/**
+	 * Make the Manager available for use. Tracker is created only once, so calling this method for already started
+	 * (shared) manager has no effect. Tracker configuration is resolved using parsed configuration cache
+	 * {@link com.jkoolcloud.tnt4j.logger.log4j.TNT4JConfigCache}, unless user defined configuration properties are set.
+	 */
+	public synchronized void startup() {
+		if (isReady()) {
+			return;
+		}
 		try {
 			if (sourceName == null) {
 				sourceName = getName();
 			}
-			TrackerConfig config = ((cProperties == null) ? cFactory.getConfig(sourceName, sourceType)
+			TrackerConfig config = ((cProperties == null) ? TNT4JConfigCache.getConfig(cFactory, sourceName, sourceType)
 					: cFactory.getConfig(sourceName, sourceType, cProperties));
 			logger = TrackingLogger.getInstance(config.build());
 			logger.open();
+			startMetricsCollector();
+			startDestinations();
+			startLingerFlusher();
 		} catch (Throwable e) {
 			logError("Unable to create tracker" //
 					+ " instance=" + getName() //
@@ -142,13 +318,138 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 		}
 	}
 
+	/**
+	 * Releases this manager: sends batched items and stops activities still open, ERROR and higher severity items
+	 * first, while given timeout is not exceeded. Items not sent within timeout are abandoned. Then tracker gets
+	 * closed, waiting for it at most until timeout expires.
+	 *
+	 * @param timeout
+	 *            maximum time to wait for pending items to be sent and tracker closed, {@code 0} - wait
+	 *            {@link #DEFAULT_RELEASE_TIMEOUT_MILLIS}
+	 * @param timeUnit
+	 *            the time unit of the timeout argument
+	 * @return {@code true} if tracker was closed within timeout, {@code false} - otherwise
+	 */
 	@Override
 	public boolean releaseSub(long timeout, TimeUnit timeUnit) {
-		if (logger != null) {
-			logger.close();
+		TrackingLogger tLogger = logger;
+		if (tLogger == null) {
+			return true;
+		}
+
+		stopMetricsCollector();
+		closePublisher();
+
+		// release must never hang (e.g. on stuck sink), so zero timeout means default one instead of no limit
+		long deadline = System.nanoTime()
+				+ (timeout > 0 ? timeUnit.toNanos(timeout) : TimeUnit.MILLISECONDS.toNanos(DEFAULT_RELEASE_TIMEOUT_MILLIS));
+		// flusher may be sending a batch: wait for it, so items are not sent concurrently with pending ones or to closed
+		// tracker
+		stopLingerFlusher(deadline);
+
+		List<Trackable> pending = drainPending();
+		int flushed = 0;
+		for (Trackable item : pending) {
+			if (deadline - System.nanoTime() <= 0) {
+				break;
+			}
+			try {
+				sendItem(item);
+				flushed++;
+			} catch (Throwable e) {
+				logWarn("Unable to send pending item " + item.getTrackingId() + " of tracker instance=" + getName(),
+						e);
+			}
+		}
+		int abandoned = pending.size() - flushed;
+		abandoned += stopDestinations(workers, deadline);
+		workers = Collections.emptyList();
+
+		Thread closer = new Thread(tLogger::close, "TNT4J-release-" + getName());
+		closer.setDaemon(true);
+		closer.start();
+		try {
+			closer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		boolean closed = !closer.isAlive();
+		lastReleaseFlushed = flushed;
+		lastReleaseAbandoned = abandoned;
+
+		String msg = "Released tracker instance=" + getName() //
+				+ ", flushed=" + flushed //
+				+ ", abandoned=" + abandoned //
+				+ ", closed=" + closed;
+		if (abandoned > 0 || !closed) {
+			logWarn(msg, null);
+		} else {
+			logDebug(msg, null);
+		}
+		return closed;
+	}
+
+	/**
+	 * Returns number of pending items sent by last release of this manager.
+	 *
+	 * @return number of flushed items
+	 */
+	public int getLastReleaseFlushed() {
+		return lastReleaseFlushed;
+	}
+
+	/**
+	 * Returns number of pending items abandoned by last release of this manager, since they could not be sent within
+	 * release timeout.
+	 *
+	 * @return number of abandoned items
+	 */
+	public int getLastReleaseAbandoned() {
+		return lastReleaseAbandoned;
+	}
+
+	/**
+	 * Collects all items pending to be sent: batched items and stopped activities still open. Items are ordered by
+	 * severity, highest first, keeping original order for same severity items.
+	 *
+	 * @return list of pending items
+	 */
+	private List<Trackable> drainPending() {
+		List<Trackable> pending = new ArrayList<>();
+		queue.drain(pending::add);
+		for (TrackingActivity activity : openActivities) {
+			activity.setStatus(ActivityStatus.END);
+			activity.stop();
+			pending.add(activity);
+			fanOut(activity, getSeverity(activity));
+		}
+		openActivities.clear();
+		pending.sort(Comparator.comparingInt((Trackable t) -> getSeverity(t).ordinal()).reversed());
+		return pending;
+	}
+
+	// attribute keys are matched ignoring case, same as in processEventMessage
+	private static boolean hasAttribute(Map<String, String> attrs, String label) {
+		if (attrs.containsKey(label)) {
+			return true;
+		}
+		for (String key : attrs.keySet()) {
+			if (key.equalsIgnoreCase(label)) {
+				return true;
+			}
 		}
+		return false;
+	}
 
-		return true;
+	private static OpLevel getSeverity(Trackable item) {
+		if (item instanceof Operation) {
+			return ((Operation) item).getSeverity();
+		} else if (item instanceof TrackingEvent) {
+			return ((TrackingEvent) item).getSeverity();
+		} else if (item instanceof Snapshot) {
+			return ((Snapshot) item).getSeverity();
+		}
+		return OpLevel.NONE;
 	}
 
 	/**
@@ -165,88 +466,652 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 	 * 
 	 * @param event
 	 *            log event to report
+	 * @return length of formatted event message, {@code 0} if message was not formatted
 	 */
-	public void tnt(LogEvent event) {
+	public int tnt(LogEvent event) {
 		if (!isReady()) {
-			return;
+			return 0;
 		}
 
-		long lastReport = System.currentTimeMillis();
+		// event instant captured by log4j is the only clock read per event
+		long evTimeUsec = getTimeUsec(event);
+		long lastReport = evTimeUsec / 1_000;
+		int msgLength = 0;
 
-		Message msg = event.getMessage();
-		String eventMsg = msg == null ? "" : msg.getFormattedMessage();
-		Throwable ex = msg == null ? null : msg.getThrowable();
+		Marker marker = event.getMarker();
+		if (marker == TNT4JMarkers.ACTIVITY_BEGIN || marker == TNT4JMarkers.ACTIVITY_END) {
+			// activity control by marker reference: no message formatting and parsing is required
+			processActivity(getActivityAttrs(event, marker == TNT4JMarkers.ACTIVITY_BEGIN), event,
+					event.getThrown());
+		} else {
+			Message msg = event.getMessage();
+			String eventMsg = msg == null ? "" : msg.getFormattedMessage();
+			msgLength = eventMsg.length();
+			Throwable ex = msg == null ? null : msg.getThrowable();
 
-		HashMap<String, String> attrs = new HashMap<>();
-		AppenderTools.parseEventMessage(attrs, eventMsg, '#');
+			HashMap<String, String> attrs = new HashMap<>();
+			Object jfr = JfrEvents.begin(JfrEvents.Stage.PARSE);
+			hashtagParser.parse(attrs, eventMsg, '#');
+			if (jfr != null) {
+				JfrEvents.commit(jfr, event.getLoggerName(), event.getLevel().name(), eventMsg.length());
+			}
 
-		boolean activityMessage = AppenderTools.isActivityInstruction(attrs);
-		if (activityMessage) {
-			AppenderTools.processActivityAttrs(logger, getName(), attrs, getOpLevel(event), ex);
-		} else {
-			TrackingActivity activity = logger.getCurrentActivity();
-			TrackingEvent tev = processEventMessage(attrs, activity, event, eventMsg, ex);
+			boolean activityMessage = AppenderTools.isActivityInstruction(attrs);
+			FlightRecorder recorder = flightRecorder;
+			boolean trigger = recorder != null && !activityMessage && FlightRecorder.isTrigger(event);
+			if (trigger) {
+				flushFlightRecorder(recorder, event);
+			}
+			if (activityMessage) {
+				processActivity(attrs, event, ex);
+			} else if (!trigger && recorder != null && FlightRecorder.isRecordable(event)) {
+				// low severity event is kept in flight recorder and shipped only along with following error
+				recorder.record(event, eventMsg, attrs, ex, getUsecsSinceLastEvent(evTimeUsec));
+			} else {
+				TrackingActivity activity = logger.getCurrentActivity();
+				jfr = JfrEvents.begin(JfrEvents.Stage.BUILD);
+				TrackingEvent tev = processEventMessage(attrs, activity, event, evTimeUsec, eventMsg, ex);
+				if (jfr != null) {
+					JfrEvents.commit(jfr, event.getLoggerName(), event.getLevel().name(), eventMsg.length());
+				}
+				boolean forward = true;
+				if (latencyAggregator != null && hasAttribute(attrs, PARAM_ELAPSED_TIME_LABEL)) {
+					long elapsedUsec = tev.getOperation().getElapsedTimeUsec();
+					latencyAggregator.record(tev.getOperation().getName(), elapsedUsec);
+					// timing is aggregated, so individual event is forwarded only when threshold is reached
+					forward = latencyThreshold < 0 || elapsedUsec >= latencyThreshold;
+				}
+				if (forward) {
+					reportEvent(event, activity, tev, ex, lastReport);
+				}
+				// published once manager is done with event (e.g. parent activity is set)
+				publish(tev);
+			}
+		}
 
-			boolean reportMetrics = activity.isNoop() //
+		if (batchSize > 0) {
+			AdaptiveBatch batching = adaptiveBatch;
+			int size = batching == null ? batchSize : batching.getBatchSize();
+			if (event.isEndOfBatch() || getQueueDepth() >= size) {
+				sendBatch();
+			}
+		}
+		reportLatencies(lastReport);
+		return msgLength;
+	}
+
+	/**
+	 * Builds activity instruction attributes for log4j event marked with {@link TNT4JMarkers#ACTIVITY_BEGIN} or
+	 * {@link TNT4JMarkers#ACTIVITY_END}. Activity name is taken from {@link TNT4JMarkers#ACTIVITY_ID_KEY} context
+	 * value, or logger name if context value is not set.
+	 *
+	 * @param event
+	 *            log4j logging event object
+	 * @param begin
+	 *            {@code true} to begin activity, {@code false} - to end
+	 * @return activity instruction attributes map
+	 */
+	private static Map<String, String> getActivityAttrs(LogEvent event, boolean begin) {
+		String activityId = event.getContextData().getValue(TNT4JMarkers.ACTIVITY_ID_KEY);
+		if (Utils.isEmpty(activityId)) {
+			activityId = event.getLoggerName() == null ? UNKNOWN_VALUE : event.getLoggerName();
+		}
+		Map<String, String> attrs = new HashMap<>(2);
+		attrs.put(begin ? PARAM_BEGIN_LABEL : PARAM_END_LABEL, activityId);
+		return attrs;
+	}
+
+	/**
+	 * Begins or ends TNT4J activity as defined by activity instruction attributes.
+	 *
+	 * @param attrs
+	 *            activity instruction attributes
+	 * @param event
+	 *            log4j logging event object
+	 * @param ex
+	 *            exception associated with this event
+	 */
+	private void processActivity(Map<String, String> attrs, LogEvent event, Throwable ex) {
+		// keep ordering: batched items go before activity reported by instruction
+		flushBatch(false);
+		TrackingActivity ending = attrs.get(PARAM_END_LABEL) == null ? null : logger.getCurrentActivity();
+		Object jfr = ending == null ? null : JfrEvents.begin(JfrEvents.Stage.ACTIVITY_FLUSH);
+		AppenderTools.processActivityAttrs(logger, snapCategory, attrs, getOpLevel(event), ex);
+		if (ending != null) {
+			openActivities.remove(ending);
+			if (!ending.isNoop() && ending.isStopped()) {
+				// activity has been sent to tracker by instruction processing, destinations get it here
+				fanOut(ending, getSeverity(ending));
+			}
+		}
+		if (attrs.get(PARAM_BEGIN_LABEL) != null) {
+			TrackingActivity started = logger.getCurrentActivity();
+			if (!started.isNoop()) {
+				openActivities.add(started);
+			}
+		}
+		if (latencyAggregator != null && ending != null && !ending.isNoop() && ending.isStopped()) {
+			latencyAggregator.record(ending.getName(), ending.getElapsedTimeUsec());
+		}
+		if (jfr != null) {
+			JfrEvents.commit(jfr, event.getLoggerName(), event.getLevel().name(), ending.getIdCount());
+		}
+	}
+
+	/**
+	 * Reports built tracking event as datagram or as part of current activity. For datagrams, JVM metrics sample linked
+	 * to event is requested from background metrics collector on exception or when metrics frequency period elapses.
+	 *
+	 * @param event
+	 *            log4j logging event object
+	 * @param activity
+	 *            TNT4J activity associated with current thread
+	 * @param tev
+	 *            TNT4J tracking event built from log4j event
+	 * @param ex
+	 *            exception associated with this event
+	 * @param lastReport
+	 *            current report time in milliseconds since epoch
+	 */
+	private void reportEvent(LogEvent event, TrackingActivity activity, TrackingEvent tev, Throwable ex,
+			long lastReport) {
+		if (activity.isNoop()) {
+			// report a single tracking event as datagram
+			send(tev, event.getLoggerName());
+
+			JvmMetricsCollector collector = metricsCollector;
+			boolean reportMetrics = collector != null //
 					&& ((ex != null && metricsOnException) //
 							|| ((lastReport - lastSnapshot) > (metricsFrequency * 1_000)));
+			// metrics are sampled by collector thread, logging thread only signals the request
+			if (reportMetrics && collector.request(tev, event.getLoggerName(), lastReport)) {
+				lastSnapshot = lastReport;
+			}
+		} else if (streamActivities) {
+			// child event is sent right away, activity keeps only compact aggregates
+			tev.setParentId(activity);
+			send(tev, event.getLoggerName());
+			getActivityStats(activity).add(tev, ex);
+		} else {
+			activity.tnt(tev);
+		}
+		if (activity.getIdCount() >= maxActivitySize) {
+			activity.setException(ex);
+			activity.setStatus(ex != null ? ActivityStatus.EXCEPTION : ActivityStatus.END);
+			activity.stop();
+			send(activity, event.getLoggerName());
+			openActivities.remove(activity);
+		}
+	}
 
-			if (reportMetrics) {
-				String loggerName = event.getLoggerName();
-				if (loggerName == null) {
-					loggerName = UNKNOWN_VALUE;
-				} else if (LogManager.ROOT_LOGGER_NAME.equals(loggerName)) {
-					loggerName = LoggerConfig.ROOT;
-				}
-				String threadName = event.getThreadName();
-				if (Utils.isEmpty(threadName)) {
-					threadName = UNKNOWN_VALUE;
+	/**
+	 * Returns aggregates of child events streamed for given activity. Aggregates are attached to activity by activity
+	 * listener when activity stops, whichever way it is stopped. Aggregates of activities never stopped are dropped
+	 * once there are too many of them.
+	 *
+	 * @param activity
+	 *            activity child events are streamed for
+	 * @return activity aggregates
+	 */
+	private ActivityStats getActivityStats(TrackingActivity activity) {
+		ActivityStats stats = activityStats.get(activity.getTrackingId());
+		if (stats == null) {
+			if (activityStats.size() >= MAX_ACTIVITY_STATS) {
+				activityStats.clear();
+			}
+			stats = new ActivityStats();
+			activityStats.put(activity.getTrackingId(), stats);
+			activity.addActivityListener(statsAttacher);
+		}
+		return stats;
+	}
+
+	/**
+	 * Adds aggregates of child events streamed for given activity as activity snapshot, raises activity severity to
+	 * maximum severity of streamed events, and sets activity exception, status and completion code when any of
+	 * streamed events had exception.
+	 *
+	 * @param activity
+	 *            stopped activity
+	 */
+	private void attachStats(Activity activity) {
+		ActivityStats stats = activityStats.remove(activity.getTrackingId());
+		if (stats == null) {
+			return;
+		}
+		activity.addSnapshot(stats.toSnapshot(logger, snapCategory));
+		OpLevel maxSeverity = stats.getMaxSeverity();
+		if (maxSeverity.ordinal() > activity.getSeverity().ordinal()) {
+			activity.setSeverity(maxSeverity);
+		}
+		if (stats.isException()) {
+			if (activity.getThrowable() == null) {
+				activity.setException(stats.getException());
+			}
+			activity.setStatus(ActivityStatus.EXCEPTION);
+			activity.setCompCode(OpCompCode.ERROR);
+		} else if (maxSeverity.ordinal() >= OpLevel.WARNING.ordinal()
+				&& activity.getCompCode() == OpCompCode.SUCCESS) {
+			activity.setCompCode(maxSeverity.ordinal() >= OpLevel.ERROR.ordinal() ? OpCompCode.ERROR
+					: OpCompCode.WARNING);
+		}
+	}
+
+	/**
+	 * Publishes built and reported tracking event to in-process subscribers, if there are any.
+	 *
+	 * @param tev
+	 *            tracking event
+	 */
+	private void publish(TrackingEvent tev) {
+		TrackingEventPublisher pub = publisher;
+		if (pub != null) {
+			pub.publish(tev);
+		}
+	}
+
+	/**
+	 * Returns publisher of tracking events built by this manager, for in-process consumers. Every subscriber gets own
+	 * bounded buffer and demand based delivery, events are dropped for subscribers not keeping up, so subscribers never
+	 * stall logging. Publisher is created on first call.
+	 *
+	 * @return tracking events publisher
+	 * @see TrackingEventPublisher
+	 */
+	public synchronized TrackingEventPublisher getPublisher() {
+		if (publisher == null) {
+			publisher = new TrackingEventPublisher(publisherBufferSize);
+		}
+		return publisher;
+	}
+
+	private synchronized void closePublisher() {
+		if (publisher != null) {
+			publisher.close();
+			publisher = null;
+		}
+	}
+
+	/**
+	 * Sends tracking item not originating from any log4j logger (e.g. aggregated latencies snapshot) to TNT4J tracker.
+	 * When batching is enabled, item is queued into lane of default logger group.
+	 *
+	 * @param item
+	 *            tracking item to send
+	 */
+	private void send(Trackable item) {
+		send(item, null);
+	}
+
+	/**
+	 * Sends tracking item to TNT4J tracker. When batching is enabled, item is queued into priority lane matching its
+	 * severity and group of originating log4j logger, and sent on next batch flush. {@code ERROR} and more severe items
+	 * are sent right away, bypassing lower severity items still queued.
+	 *
+	 * @param item
+	 *            tracking item to send
+	 * @param loggerName
+	 *            name of log4j logger item originates from, {@code null} - item belongs to default logger group
+	 */
+	private void send(Trackable item, String loggerName) {
+		OpLevel severity = getSeverity(item);
+		fanOut(item, severity);
+		if (batchSize > 0) {
+			LaneQueue q = queue;
+			boolean queued = q.offer(item, severity, loggerName);
+			if (LaneQueue.isUrgent(severity)) {
+				q.drainUrgent(this::sendItem);
+				if (!queued) {
+					// urgent lane is full only while sink is stuck, so item is sent right away instead of dropped
+					sendItem(item);
 				}
+			}
+		} else {
+			sendItem(item);
+		}
+	}
 
-				// report a single tracking event as part of an activity
-				activity = logger.newActivity(tev.getSeverity(), threadName);
-				activity.start();
-				activity.setResource(loggerName);
-				activity.setSource(tev.getSource()); // use event's source name for this activity
-				activity.setException(ex);
-				activity.setStatus(ex != null ? ActivityStatus.EXCEPTION : ActivityStatus.END);
-				activity.tnt(tev);
-				activity.stop();
-				logger.tnt(activity);
-				lastSnapshot = lastReport;
-			} else if (activity.isNoop()) {
-				// report a single tracking event as datagram
-				logger.tnt(tev);
-			} else {
-				activity.tnt(tev);
+	/**
+	 * Queues tracking item to all additional destinations. Item is built once and shared by all destinations.
+	 *
+	 * @param item
+	 *            tracking item to send
+	 * @param severity
+	 *            item severity
+	 */
+	private void fanOut(Trackable item, OpLevel severity) {
+		for (DestinationWorker worker : workers) {
+			worker.offer(item, severity);
+		}
+	}
+
+	/**
+	 * Creates trackers and starts workers of all additional destinations. Destination which tracker fails to start is
+	 * skipped.
+	 */
+	private void startDestinations() {
+		List<DestinationWorker> started = new ArrayList<>(destinations.size());
+		for (TNT4JDestination destination : destinations) {
+			try {
+				TrackerConfig config = ((cProperties == null)
+						? TNT4JConfigCache.getConfig(cFactory, destination.getSourceName(), destination.getSourceType())
+						: cFactory.getConfig(destination.getSourceName(), destination.getSourceType(), cProperties));
+				TrackingLogger dLogger = TrackingLogger.getInstance(config.build());
+				dLogger.open();
+				started.add(new DestinationWorker(destination, dLogger));
+			} catch (Throwable e) {
+				logError("Unable to create destination tracker" //
+						+ " instance=" + getName() //
+						+ ", destination=" + destination //
+						, e);
+			}
+		}
+		workers = Collections.unmodifiableList(started);
+	}
+
+	/**
+	 * Stops given destination workers, waiting for their queued items to be sent until deadline.
+	 *
+	 * @param stopping
+	 *            destination workers to stop
+	 * @param deadline
+	 *            {@link System#nanoTime()} based deadline
+	 * @return number of items abandoned by destinations not stopped within deadline
+	 */
+	private int stopDestinations(List<DestinationWorker> stopping, long deadline) {
+		int abandoned = 0;
+		for (DestinationWorker worker : stopping) {
+			long timeout = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+			if (!worker.stop(timeout)) {
+				abandoned += worker.getQueue().size();
+				logWarn("Destination not stopped in time: " + worker.getDestination(), null);
+			}
+		}
+		return abandoned;
+	}
+
+	/**
+	 * Returns workers of additional destinations.
+	 *
+	 * @return unmodifiable list of destination workers
+	 */
+	public List<DestinationWorker> getDestinationWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Set additional destinations tracking items are sent to, besides this manager tracker. If manager is already
+	 * started and destinations have changed, running destinations are stopped (sending their queued items) and new
+	 * ones started.
+	 *
+	 * @param dests
+	 *            additional destinations, {@code null} - none
+	 */
+	public synchronized void setDestinations(List<TNT4JDestination> dests) {
+		List<TNT4JDestination> newDests = dests == null ? Collections.emptyList() : new ArrayList<>(dests);
+		if (newDests.equals(destinations)) {
+			return;
+		}
+		destinations = newDests;
+		if (isReady()) {
+			List<DestinationWorker> old = workers;
+			startDestinations();
+			stopDestinations(old, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEFAULT_RELEASE_TIMEOUT_MILLIS));
+		}
+	}
+
+	private void sendItem(Trackable item) {
+		Object jfr = JfrEvents.begin(JfrEvents.Stage.SINK_SEND);
+		long start = System.nanoTime();
+		if (item instanceof TrackingActivity) {
+			logger.tnt((TrackingActivity) item);
+		} else if (item instanceof TrackingEvent) {
+			logger.tnt((TrackingEvent) item);
+		} else if (item instanceof Snapshot) {
+			logger.tnt((Snapshot) item);
+		}
+		long end = System.nanoTime();
+		// exponentially weighted moving average, racy updates are tolerated
+		long avg = getSendLatencyNanos(end);
+		sendLatencyNanos = avg + ((end - start - avg) >> 3);
+		lastSendNanos = end;
+		if (jfr != null) {
+			JfrEvents.commit(jfr, getItemName(item), getSeverity(item).name(), 1);
+		}
+	}
+
+	private static String getItemName(Trackable item) {
+		if (item instanceof TrackingEvent) {
+			return ((TrackingEvent) item).getOperation().getResource();
+		}
+		if (item instanceof TrackingActivity) {
+			return ((TrackingActivity) item).getResource();
+		}
+		return item.getName();
+	}
+
+	/**
+	 * Returns number of tracking items queued and not yet sent to TNT4J tracker. This value is read without locking
+	 * and is intended for pipeline saturation checks. When batching is off, items are sent by logging thread and queue
+	 * depth is always {@code 0}.
+	 *
+	 * @return number of queued items
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns moving average of time taken to send single tracking item to TNT4J tracker. Average decays while no items
+	 * are sent, halving every second since last send, so latency spike of a sink gone idle is not reported forever.
+	 *
+	 * @return average send latency, in nanoseconds
+	 */
+	public long getSendLatencyNanos() {
+		return getSendLatencyNanos(System.nanoTime());
+	}
+
+	private long getSendLatencyNanos(long now) {
+		long halvings = (now - lastSendNanos) / SEND_LATENCY_HALF_LIFE_NANOS;
+		return halvings >= Long.SIZE ? 0 : sendLatencyNanos >> halvings;
+	}
+
+	/**
+	 * Returns priority lanes queue of batched tracking items, providing per lane depth, drop counts and queueing
+	 * latency.
+	 *
+	 * @return batched items queue
+	 */
+	public LaneQueue getQueue() {
+		return queue;
+	}
+
+	/**
+	 * Sends next batch of queued tracking items, sized by adaptive batching controller (if enabled), and flushes
+	 * tracker event sink.
+	 */
+	private void sendBatch() {
+		AdaptiveBatch batching = adaptiveBatch;
+		int size = batching == null ? batchSize : batching.getBatchSize();
+		long start = System.nanoTime();
+		int sent = flushBatch(true, size);
+		if (batching != null && sent > 0) {
+			batching.update(sent, System.nanoTime() - start, getQueueDepth());
+		}
+	}
+
+	private void startLingerFlusher() {
+		Thread flusher = new Thread(this::lingerFlush, "TNT4J-linger-" + getName());
+		flusher.setDaemon(true);
+		lingerFlusher = flusher;
+		flusher.start();
+	}
+
+	/**
+	 * Stops linger flusher and waits for it to finish batch it may be sending, at most until given deadline.
+	 *
+	 * @param deadline
+	 *            {@link System#nanoTime()} deadline to wait for flusher to stop
+	 */
+	private void stopLingerFlusher(long deadline) {
+		Thread flusher = lingerFlusher;
+		lingerFlusher = null;
+		if (flusher == null) {
+			return;
+		}
+		LockSupport.unpark(flusher);
+		try {
+			flusher.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (flusher.isAlive()) {
+			logWarn("Linger flusher of tracker instance=" + getName() + " did not stop within release timeout", null);
+		}
+	}
+
+	/**
+	 * Linger flusher loop: sends batched items once linger time has elapsed since last batch was sent, so items are not
+	 * held when log4j does not mark end of batch (synchronous loggers) and traffic is too low to fill the batch.
+	 */
+	private void lingerFlush() {
+		while (lingerFlusher == Thread.currentThread()) {
+			long linger = getLingerNanos();
+			long wait = batchSize > 0 && queue.size() > 0 ? linger - (System.nanoTime() - lastFlushNanos) : linger;
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait);
+				continue;
 			}
-			if (activity.getIdCount() >= maxActivitySize) {
-				activity.setException(ex);
-				activity.setStatus(ex != null ? ActivityStatus.EXCEPTION : ActivityStatus.END);
-				activity.stop();
-				logger.tnt(activity);
+			try {
+				sendBatch();
+			} catch (Exception e) {
+				logWarn("Unable to send batched items of tracker instance=" + getName(), e);
 			}
 		}
 	}
 
 	/**
-	 * Obtain elapsed nanoseconds since last log4j event
+	 * Sends all batched tracking items to TNT4J tracker, urgent lane items first.
+	 *
+	 * @param flushSink
+	 *            flag indicating whether to flush tracker event sink after batch is sent
+	 */
+	protected void flushBatch(boolean flushSink) {
+		flushBatch(flushSink, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Sends at most given number of batched tracking items to TNT4J tracker, urgent lane items first, then logger group
+	 * lanes items in weighted fair order.
+	 *
+	 * @param flushSink
+	 *            flag indicating whether to flush tracker event sink after batch is sent
+	 * @param max
+	 *            maximum number of items to send
+	 * @return number of sent items
+	 */
+	protected int flushBatch(boolean flushSink, int max) {
+		int sent = queue.drain(this::sendItem, max);
+		lastFlushNanos = System.nanoTime();
+		if (sent > 0 && flushSink) {
+			try {
+				logger.getEventSink().flush();
+			} catch (Exception e) {
+				logWarn("Unable to flush event sink of tracker instance=" + getName(), e);
+			}
+		}
+		return sent;
+	}
+
+	/**
+	 * Reports aggregated operation latencies when latency aggregation is enabled and reporting interval has elapsed.
+	 *
+	 * @param now
+	 *            current time in milliseconds since epoch
+	 */
+	protected void reportLatencies(long now) {
+		if (latencyAggregator != null && latencyAggregator.isDue(now)) {
+			Object jfr = JfrEvents.begin(JfrEvents.Stage.METRICS_SNAPSHOT);
+			int reported = latencyAggregator.report(logger, snapCategory, now, this::send);
+			if (jfr != null) {
+				JfrEvents.commit(jfr, snapCategory, OpLevel.INFO.name(), reported);
+			}
+		}
+	}
+
+	/**
+	 * Obtain elapsed microseconds since last log4j event processed by current thread. Elapsed time is computed from
+	 * event timestamps, so no additional clock reads are made.
+	 *
+	 * @param evTimeUsec
+	 *            current event time, in microseconds since epoch
+	 * @return elapsed microseconds since last log4j event, {@code 0} for first event of the thread
+	 */
+	protected long getUsecsSinceLastEvent(long evTimeUsec) {
+		long[] last = LAST_EVENT_USEC.get();
+		long elapsed = last[0] == 0 ? 0 : Math.max(0, evTimeUsec - last[0]);
+		last[0] = evTimeUsec;
+		return elapsed;
+	}
+
+	/**
+	 * Obtain log4j event time in microseconds since epoch, taken from event {@link Instant}, which keeps precision
+	 * of log4j clock (microseconds on Java 9+).
+	 *
+	 * @param event
+	 *            log4j event
+	 * @return event time, in microseconds since epoch
+	 */
+	public static long getTimeUsec(LogEvent event) {
+		Instant instant = event.getInstant();
+		return instant.getEpochSecond() * 1_000_000 + instant.getNanoOfSecond() / 1_000;
+	}
+
+	/**
+	 * Process a given log4j event into a TNT4J event object {@link com.jkoolcloud.tnt4j.tracker.TrackingEvent}.
+	 *
+	 * @param attrs
+	 *            a set of name/value pairs
+	 * @param activity
+	 *            TNT4J activity associated with current message
+	 * @param jev
+	 *            log4j logging event object
+	 * @param evTime
+	 *            log4j event time, in microseconds since epoch
+	 * @param eventMsg
+	 *            string message associated with this event
+	 * @param ex
+	 *            exception associated with this event
 	 *
-	 * @return elapsed nanoseconds since last log4j event
+	 * @return TNT4J tracking event object
 	 */
-	protected long getUsecsSinceLastEvent() {
-		return TimeUnit.NANOSECONDS.toMicros(TimeTracker.hitAndGet());
+	private TrackingEvent processEventMessage(Map<String, String> attrs, TrackingActivity activity, LogEvent jev,
+			long evTime, String eventMsg, Throwable ex) {
+		// caller location is resolved only when requested, since it forces stack walk for every event
+		StackTraceElement location = includeLocation ? jev.getSource() : null;
+		return processEventMessage(attrs, jev.getLoggerName(), jev.getThreadName(), jev.getLevel(), jev.getMarker(),
+				location, evTime, getUsecsSinceLastEvent(evTime), eventMsg, ex);
 	}
 
 	/**
-	 * Process a given log4j event into a TNT4J event object {@link com.jkoolcloud.tnt4j.tracker.TrackingEvent}.
+	 * Process log4j event properties into a TNT4J event object {@link com.jkoolcloud.tnt4j.tracker.TrackingEvent}.
 	 *
 	 * @param attrs
 	 *            a set of name/value pairs
-	 * @param activity
-	 *            TNT4J activity associated with current message
-	 * @param jev
-	 *            log4j logging event object
+	 * @param loggerName
+	 *            log4j event logger name
+	 * @param threadName
+	 *            log4j event thread name
+	 * @param lvl
+	 *            log4j event level
+	 * @param marker
+	 *            log4j event marker, or {@code null}
+	 * @param location
+	 *            log4j event caller location, or {@code null}
+	 * @param evTime
+	 *            log4j event time, in microseconds since epoch
+	 * @param elapsedTimeUsec
+	 *            time elapsed since previous event of the same thread, in microseconds
 	 * @param eventMsg
 	 *            string message associated with this event
 	 * @param ex
@@ -254,28 +1119,26 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 	 *
 	 * @return TNT4J tracking event object
 	 */
-	private TrackingEvent processEventMessage(Map<String, String> attrs, TrackingActivity activity, LogEvent jev,
-			String eventMsg, Throwable ex) {
+	private TrackingEvent processEventMessage(Map<String, String> attrs, String loggerName, String threadName,
+			Level lvl, Marker marker, StackTraceElement location, long evTime, long elapsedTimeUsec, String eventMsg,
+			Throwable ex) {
 		int rCode = 0;
-		long elapsedTimeUsec = getUsecsSinceLastEvent();
-		long evTime = jev.getTimeMillis() * 1_000; // convert to usec
 		long startTime = 0, endTime = 0;
 		Snapshot snapshot = null;
 
-		OpCompCode cCode = getOpCompCode(jev);
-		OpLevel level = getOpLevel(jev);
-		StackTraceElement location = jev.getSource();
-		String loggerName = jev.getLoggerName();
+		OpCompCode cCode = getOpCompCode(lvl);
+		OpLevel level = toOpLevel(lvl);
 		if (LogManager.ROOT_LOGGER_NAME.equals(loggerName)) {
 			loggerName = LoggerConfig.ROOT;
 		}
 
-		TrackingEvent event = logger.newEvent(location == null ? UNKNOWN_VALUE : location.getMethodName(), eventMsg);
+		TrackingEvent event = logger.newEvent(location == null ? getOperationName(marker, loggerName)
+				: location.getMethodName(), eventMsg);
 		event.getOperation().setSeverity(level);
-		event.setTag(jev.getThreadName());
+		event.setTag(threadName);
 		event.getOperation().setResource(loggerName == null ? UNKNOWN_VALUE : loggerName);
 		if (location != null) {
-			event.setLocation(location.getFileName() + ":" + location.getLineNumber());
+			event.setLocation(getLocationString(location));
 		}
 		event.setSource(logger.getConfiguration().getSourceFactory().newSource(loggerName));
 
@@ -322,7 +1185,7 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 					snapshot = logger.newSnapshot(snapCategory, event.getOperation().getName());
 					event.getOperation().addSnapshot(snapshot);
 				}
-				snapshot.add(AppenderTools.toProperty(key, value));
+				snapshot.add(propertyConverter.toProperty(key, value));
 			}
 		}
 		startTime = startTime <= 0 ? (evTime - elapsedTimeUsec) : evTime;
@@ -333,6 +1196,76 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 		return event;
 	}
 
+	/**
+	 * Reports events kept by flight recorder for the same thread (correlator) as given error event. Events are added to
+	 * current activity, or sent as standalone events if there is no activity.
+	 *
+	 * @param recorder
+	 *            flight recorder
+	 * @param trigger
+	 *            log4j error event triggering flush
+	 */
+	private void flushFlightRecorder(FlightRecorder recorder, LogEvent trigger) {
+		TrackingActivity activity = logger.getCurrentActivity();
+		boolean inActivity = activity != null && !activity.isNoop();
+		recorder.drain(trigger, rec -> {
+			TrackingEvent tev = processEventMessage(rec.getAttributes(), rec.getLoggerName(), rec.getThreadName(),
+					rec.getLevel(), rec.getMarker(), null, rec.getTimeUsec(), rec.getElapsedTimeUsec(),
+					rec.getMessage(), rec.getThrown());
+			if (inActivity) {
+				activity.tnt(tev);
+			} else {
+				send(tev, rec.getLoggerName());
+			}
+			publish(tev);
+		});
+	}
+
+	/**
+	 * Resolves operation name for log4j event without caller location: event marker name if marker is set, or simple
+	 * logger name otherwise.
+	 *
+	 * @param marker
+	 *            log4j event marker, or {@code null}
+	 * @param loggerName
+	 *            log4j event logger name
+	 * @return operation name
+	 */
+	private static String getOperationName(Marker marker, String loggerName) {
+		if (marker != null) {
+			return marker.getName();
+		}
+		return getOperationName(loggerName);
+	}
+
+	private static String getOperationName(String loggerName) {
+		if (loggerName == null) {
+			return UNKNOWN_VALUE;
+		}
+		int idx = loggerName.lastIndexOf('.');
+		return idx < 0 ? loggerName : loggerName.substring(idx + 1);
+	}
+
+	/**
+	 * Returns {@code file:line} location string for given caller stack frame. Location strings are cached, since same
+	 * frames (logging statements) are resolved over and over again.
+	 *
+	 * @param location
+	 *            caller stack frame
+	 * @return location string
+	 */
+	private static String getLocationString(StackTraceElement location) {
+		String locStr = LOCATIONS_CACHE.get(location);
+		if (locStr == null) {
+			if (LOCATIONS_CACHE.size() >= MAX_LOCATIONS_CACHE_SIZE) {
+				LOCATIONS_CACHE.clear();
+			}
+			locStr = location.getFileName() + ":" + location.getLineNumber();
+			LOCATIONS_CACHE.put(location, locStr);
+		}
+		return locStr;
+	}
+
 	/**
 	 * Map log4j logging event level to TNT4J {@link com.jkoolcloud.tnt4j.core.OpLevel}.
 	 *
@@ -341,7 +1274,17 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 	 * @return TNT4J {@link com.jkoolcloud.tnt4j.core.OpLevel}.
 	 */
 	private OpLevel getOpLevel(LogEvent event) {
-		Level lvl = event.getLevel();
+		return toOpLevel(event.getLevel());
+	}
+
+	/**
+	 * Map log4j level to TNT4J {@link com.jkoolcloud.tnt4j.core.OpLevel}.
+	 *
+	 * @param lvl
+	 *            log4j level
+	 * @return TNT4J {@link com.jkoolcloud.tnt4j.core.OpLevel}.
+	 */
+	public static OpLevel toOpLevel(Level lvl) {
 		if (lvl == Level.INFO) {
 			return OpLevel.INFO;
 		} else if (lvl == Level.FATAL) {
@@ -364,12 +1307,11 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 	/**
 	 * Map log4j logging event level to TNT4J {@link com.jkoolcloud.tnt4j.core.OpCompCode}.
 	 *
-	 * @param event
-	 *            log4j logging event object
+	 * @param lvl
+	 *            log4j logging event level
 	 * @return TNT4J {@link com.jkoolcloud.tnt4j.core.OpCompCode}.
 	 */
-	private OpCompCode getOpCompCode(LogEvent event) {
-		Level lvl = event.getLevel();
+	private static OpCompCode getOpCompCode(Level lvl) {
 		if (lvl == Level.INFO) {
 			return OpCompCode.SUCCESS;
 		} else if (lvl == Level.FATAL) {
@@ -421,13 +1363,17 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 	}
 
 	/**
-	 * Set snapshot category associated with this appender. This name is used for reporting user defined metrics
+	 * Set snapshot category associated with this appender. This name is used for reporting user defined metrics.
+	 * Running JVM metrics collector is restarted to use new category.
 	 *
 	 * @param name
 	 *            snapshot category name
 	 */
-	public void setSnapshotCategory(String name) {
+	public synchronized void setSnapshotCategory(String name) {
 		snapCategory = name;
+		if (isReady()) {
+			startMetricsCollector();
+		}
 	}
 
 	/**
@@ -538,4 +1484,575 @@ public class TNT4JManager extends AbstractManager implements AppenderConstants {
 	public void setMetricsFrequency(long freq) {
 		metricsFrequency = freq;
 	}
+
+	/**
+	 * Obtain operation latencies aggregation and reporting interval.
+	 *
+	 * @return latency reporting interval, in seconds, {@code 0} - when latency aggregation is disabled
+	 */
+	public long getLatencyInterval() {
+		return latencyInterval;
+	}
+
+	/**
+	 * Set operation latencies aggregation and reporting interval. Latencies are aggregated for events having elapsed
+	 * time ({@code #elt}) defined and for activities ended using {@code #end}. Value {@code 0} disables latency
+	 * aggregation.
+	 *
+	 * @param interval
+	 *            number of seconds
+	 */
+	public void setLatencyInterval(long interval) {
+		if (interval != latencyInterval || (interval > 0 && latencyAggregator == null)) {
+			latencyAggregator = interval > 0 ? new LatencyAggregator(interval) : null;
+		}
+		latencyInterval = interval;
+	}
+
+	/**
+	 * Obtain elapsed time threshold for aggregated events to be forwarded individually.
+	 *
+	 * @return elapsed time threshold, in microseconds, negative value means all events are forwarded
+	 */
+	public long getLatencyThreshold() {
+		return latencyThreshold;
+	}
+
+	/**
+	 * Set elapsed time threshold for aggregated events to be forwarded individually. When latency aggregation is
+	 * enabled, only events having elapsed time greater or equal to this threshold are sent to TNT4J. Negative value
+	 * forwards all events.
+	 *
+	 * @param threshold
+	 *            elapsed time threshold, in microseconds
+	 */
+	public void setLatencyThreshold(long threshold) {
+		latencyThreshold = threshold;
+	}
+
+	/**
+	 * Returns whether caller location (method, file and line) is resolved for reported events.
+	 *
+	 * @return {@code true} if caller location is included, {@code false} - otherwise
+	 */
+	public boolean isIncludeLocation() {
+		return includeLocation;
+	}
+
+	/**
+	 * Set whether caller location (method, file and line) is resolved for reported events. Resolving caller location
+	 * requires stack walk for every logged event. When disabled, event operation name is taken from event marker or
+	 * logger name and location can be provided using {@code #loc} hashtag.
+	 *
+	 * @param flag
+	 *            {@code true} to include caller location, {@code false} - otherwise
+	 */
+	public void setIncludeLocation(boolean flag) {
+		includeLocation = flag;
+	}
+
+	/**
+	 * Obtain maximum number of tracking items batched before sending them to TNT4J tracker.
+	 *
+	 * @return maximum batch size, {@code 0} - when batching is disabled
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set maximum number of tracking items batched before sending them to TNT4J tracker. Batch is sent and tracker
+	 * event sink gets flushed when log4j marks event as end of batch ({@code AsyncLogger}, {@code AsyncAppender}),
+	 * when batch size reaches this limit, or when linger time elapses since last batch was sent. Value {@code 0}
+	 * disables batching.
+	 *
+	 * @param size
+	 *            maximum batch size
+	 */
+	public void setBatchSize(int size) {
+		batchSize = size;
+	}
+
+	/**
+	 * Obtain maximum time batched items are held before being sent.
+	 *
+	 * @return linger time, in milliseconds
+	 */
+	public long getLingerMillis() {
+		return lingerMillis;
+	}
+
+	/**
+	 * Set maximum time batched items are held before being sent, when batch is neither filled up nor ended by log4j.
+	 * When adaptive batching is enabled, this is the upper bound of tuned linger time. Call
+	 * {@link #setAdaptiveBatch(boolean, long)} to apply it to adaptive batching controller.
+	 *
+	 * @param millis
+	 *            linger time, in milliseconds, at least {@code 1}
+	 */
+	public void setLingerMillis(long millis) {
+		lingerMillis = Math.max(1, millis);
+	}
+
+	private long getLingerNanos() {
+		AdaptiveBatch batching = adaptiveBatch;
+		return batching == null ? TimeUnit.MILLISECONDS.toNanos(lingerMillis) : batching.getLingerNanos();
+	}
+
+	/**
+	 * Returns adaptive batch size controller, providing current batch size, linger time and last batch send latency.
+	 *
+	 * @return adaptive batch size controller, {@code null} - when adaptive batching is disabled
+	 */
+	public AdaptiveBatch getAdaptiveBatch() {
+		return adaptiveBatch;
+	}
+
+	/**
+	 * Set adaptive batching: batch size is tuned AIMD style between {@code 1} and {@link #getBatchSize()}, and linger
+	 * time between {@code 1ms} and {@link #getLingerMillis()}, using measured batch send (and sink flush) latency and
+	 * queue depth. Batch size is halved when batch send latency exceeds target, and increased while items queue up
+	 * faster than they are sent or full batches are sent within target latency. Requires batching to be enabled. Tuned
+	 * batch state is kept when bounds and target latency are not changed.
+	 *
+	 * @param flag
+	 *            {@code true} to enable adaptive batching, {@code false} - to use fixed batch size
+	 * @param targetLatencyMillis
+	 *            target batch send latency, in milliseconds
+	 */
+	public void setAdaptiveBatch(boolean flag, long targetLatencyMillis) {
+		if (!flag || batchSize <= 0) {
+			adaptiveBatch = null;
+			return;
+		}
+		long maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+		long targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+		AdaptiveBatch current = adaptiveBatch;
+		if (current == null || current.getMaxBatchSize() != batchSize
+				|| current.getMaxLingerNanos() != maxLingerNanos
+				|| current.getTargetLatencyNanos() != targetLatencyNanos) {
+			adaptiveBatch = new AdaptiveBatch(1, batchSize, TimeUnit.MILLISECONDS.toNanos(1), maxLingerNanos,
+					targetLatencyNanos);
+		}
+	}
+
+	/**
+	 * Returns parser of message hashtag attributes, providing applied limits and counts of skipped and truncated
+	 * attributes.
+	 *
+	 * @return hashtag attributes parser
+	 */
+	public HashtagParser getHashtagParser() {
+		return hashtagParser;
+	}
+
+	/**
+	 * Set limits of message hashtag attributes, enforced while message is parsed. Attributes over the count limit are
+	 * skipped (except event and activity field hashtags, like {@code #opn} or {@code #beg}), longer keys and values are
+	 * truncated. Message having any attribute skipped or truncated gets {@link HashtagParser#OVERFLOW_KEY} snapshot
+	 * property containing number of affected attributes. Parser (and its counters) is kept when limits are not changed.
+	 *
+	 * @param maxAttributes
+	 *            maximum number of user attributes per message, {@code 0} - unlimited
+	 * @param maxKeyLength
+	 *            maximum attribute key length, {@code 0} - unlimited
+	 * @param maxValueLength
+	 *            maximum attribute value length, {@code 0} - unlimited
+	 */
+	public void setAttributeLimits(int maxAttributes, int maxKeyLength, int maxValueLength) {
+		HashtagParser current = hashtagParser;
+		if (current == null || !current.hasLimits(maxAttributes, maxKeyLength, maxValueLength)) {
+			hashtagParser = new HashtagParser(maxAttributes, maxKeyLength, maxValueLength, RESERVED_KEYS);
+		}
+	}
+
+	/**
+	 * Obtain data type hints of user defined hashtag attributes.
+	 *
+	 * @return attribute type hints definition
+	 */
+	public String getAttributeTypes() {
+		return propertyConverter.getDefinition();
+	}
+
+	/**
+	 * Set data type hints of user defined hashtag attributes, as comma separated list of {@code key:type} entries, e.g.
+	 * {@code bytes:long,ratio:double,hit:boolean}. Hints apply to attributes having no data type annotation
+	 * ({@code %[data-type]/key}), other attributes are reported as {@link Long} if value is numeric, or as
+	 * {@link String} otherwise.
+	 *
+	 * @param typeHints
+	 *            attribute type hints definition, {@code null} - no hints
+	 */
+	public void setAttributeTypes(String typeHints) {
+		String def = typeHints == null ? "" : typeHints.trim();
+		if (!def.equals(propertyConverter.getDefinition())) {
+			propertyConverter = new PropertyConverter(def);
+		}
+	}
+
+	/**
+	 * Checks whether streaming activity mode is enabled.
+	 *
+	 * @return {@code true} if child events are streamed, {@code false} - if they are kept in activity
+	 */
+	public boolean isStreamActivities() {
+		return streamActivities;
+	}
+
+	/**
+	 * Set streaming activity mode: child events are sent immediately, having parent activity id set, instead of being
+	 * kept in activity until it ends or reaches {@code maxActivitySize}. Activity keeps only compact aggregates (event
+	 * count, first and last event time, maximum severity and exception flag), reported as activity snapshot.
+	 *
+	 * @param flag
+	 *            {@code true} to stream child events, {@code false} - to keep them in activity
+	 */
+	public void setStreamActivities(boolean flag) {
+		streamActivities = flag;
+	}
+
+	/**
+	 * Obtain minimal period between two JVM metrics samples.
+	 *
+	 * @return metrics cooldown period in milliseconds
+	 */
+	public long getMetricsCooldown() {
+		return metricsCooldown;
+	}
+
+	/**
+	 * Set minimal period between two JVM metrics samples. Running JVM metrics collector is restarted to use new
+	 * cooldown.
+	 *
+	 * @param cooldown
+	 *            metrics cooldown period in milliseconds
+	 */
+	public synchronized void setMetricsCooldown(long cooldown) {
+		metricsCooldown = cooldown;
+		if (isReady()) {
+			startMetricsCollector();
+		}
+	}
+
+	/**
+	 * Obtain number of low severity events kept per thread (correlator) by flight recorder.
+	 *
+	 * @return flight recorder ring size, {@code 0} - when flight recorder is disabled
+	 */
+	public int getFlightRecorderSize() {
+		FlightRecorder recorder = flightRecorder;
+		return recorder == null ? 0 : recorder.getCapacity();
+	}
+
+	/**
+	 * Set flight recorder mode: last {@code size} {@code DEBUG} and {@code TRACE} events per thread (or per
+	 * correlator, defined by {@code ThreadContext} key) are kept in memory instead of being sent, and sent only when
+	 * {@code ERROR} (or more severe) or exception event occurs on the same thread (correlator). Recorded events are kept
+	 * when size and correlator key are not changed.
+	 *
+	 * @param size
+	 *            number of events kept per thread (correlator), {@code 0} - disables flight recorder
+	 * @param contextKey
+	 *            {@code ThreadContext} key of correlator, {@code null} - keep events per thread
+	 */
+	public void setFlightRecorder(int size, String contextKey) {
+		String key = Utils.isEmpty(contextKey) ? null : contextKey;
+		FlightRecorder current = flightRecorder;
+		if (size <= 0) {
+			flightRecorder = null;
+		} else if (current == null || current.getCapacity() != size || !Objects.equals(current.getContextKey(), key)) {
+			flightRecorder = new FlightRecorder(size, key);
+		}
+	}
+
+	/**
+	 * Obtain maximum number of lower than {@code ERROR} severity items queued for batch.
+	 *
+	 * @return normal lane capacity, {@code 0} - unbounded
+	 */
+	public int getQueueCapacity() {
+		return queue.getCapacity();
+	}
+
+	/**
+	 * Set batched items queue bounds. {@code ERROR} and more severe items use dedicated lane of
+	 * {@value LaneQueue#URGENT_CAPACITY} items, which is drained first, while lower severity items share lane bounded
+	 * by {@code capacity}, dropping items by given policy when full. {@code ERROR} and more severe items are never
+	 * dropped: when urgent lane is full, item is sent right away by logging thread. Items still queued are moved into
+	 * new queue.
+	 *
+	 * @param capacity
+	 *            normal lane capacity, {@code 0} - unbounded
+	 * @param dropPolicy
+	 *            normal lane drop policy
+	 */
+	public void setQueue(int capacity, LaneQueue.DropPolicy dropPolicy) {
+		LaneQueue old = queue;
+		LaneQueue.DropPolicy policy = dropPolicy == null ? LaneQueue.DropPolicy.DROP_NEWEST : dropPolicy;
+		if (old.getCapacity() == capacity && old.getDropPolicy() == policy && old.getGroups() == loggerGroups) {
+			return;
+		}
+		LaneQueue q = new LaneQueue(capacity, policy, loggerGroups);
+		queue = q;
+		old.drainTo(q);
+	}
+
+	/**
+	 * Obtain logger groups definition used for weighted fair queuing of batched items.
+	 *
+	 * @return logger groups definition
+	 */
+	public String getLoggerGroups() {
+		return loggerGroups.getDefinition();
+	}
+
+	/**
+	 * Set logger groups used for weighted fair queuing of batched items, as comma separated list of
+	 * {@code loggerNamePrefix[=weight]} entries, e.g. {@code org=1,com.myco=4}. Every group gets own queue lane having
+	 * share of queue capacity and sink throughput proportional to its weight, so flooding group does not starve other
+	 * groups. Takes effect with next {@link #setQueue(int, LaneQueue.DropPolicy)} call.
+	 *
+	 * @param definition
+	 *            logger groups definition, {@code null} - single group for all loggers
+	 */
+	public void setLoggerGroups(String definition) {
+		String def = definition == null ? "" : definition.trim();
+		if (!def.equals(loggerGroups.getDefinition())) {
+			loggerGroups = Utils.isEmpty(def) ? LoggerGroups.NONE : new LoggerGroups(def);
+		}
+	}
+
+	/**
+	 * Data used to create and update {@link TNT4JManager} instance.
+	 */
+	public static class FactoryData {
+		private final Configuration configuration;
+		private final String sourceName;
+		private final SourceType sourceType;
+
+		private String snapCategory = TNT4JAppender.SNAPSHOT_CATEGORY;
+		private int maxActivitySize = 100;
+		private boolean streamActivities = false;
+		private boolean metricsOnException = true;
+		private long metricsFrequency = 60;
+		private long metricsCooldown = 1_000;
+		private long latencyInterval = 0;
+		private long latencyThreshold = -1;
+		private boolean includeLocation = false;
+		private int batchSize = 0;
+		private long lingerMillis = DEFAULT_LINGER_MILLIS;
+		private boolean adaptiveBatch = false;
+		private long targetLatencyMillis = 50;
+		private int queueCapacity = LaneQueue.DEFAULT_CAPACITY;
+		private LaneQueue.DropPolicy dropPolicy = LaneQueue.DropPolicy.DROP_NEWEST;
+		private String loggerGroups;
+		private List<TNT4JDestination> destinations;
+		private int publisherBufferSize = Flow.defaultBufferSize();
+		private int maxAttributes = 100;
+		private int maxKeyLength = 256;
+		private int maxValueLength = 8_192;
+		private String attributeTypes;
+		private int flightRecorderSize = 0;
+		private String flightRecorderKey;
+
+		/**
+		 * Constructs a new factory data instance.
+		 *
+		 * @param configuration
+		 *            appender configuration
+		 * @param sourceName
+		 *            tracker source name
+		 * @param sourceType
+		 *            tracker source type
+		 */
+		public FactoryData(Configuration configuration, String sourceName, SourceType sourceType) {
+			this.configuration = configuration;
+			this.sourceName = sourceName;
+			this.sourceType = sourceType;
+		}
+
+		/**
+		 * Checks whether given data defines same manager settings as this data. Appender configuration is not
+		 * compared.
+		 *
+		 * @param other
+		 *            data to compare with
+		 * @return {@code true} if all manager settings are equal, {@code false} - otherwise
+		 */
+		public boolean hasSameSettings(FactoryData other) {
+			return Objects.equals(sourceName, other.sourceName) && sourceType == other.sourceType
+					&& Objects.equals(snapCategory, other.snapCategory) && maxActivitySize == other.maxActivitySize
+					&& streamActivities == other.streamActivities && metricsOnException == other.metricsOnException
+					&& metricsFrequency == other.metricsFrequency && metricsCooldown == other.metricsCooldown
+					&& latencyInterval == other.latencyInterval && latencyThreshold == other.latencyThreshold
+					&& includeLocation == other.includeLocation && batchSize == other.batchSize
+					&& lingerMillis == other.lingerMillis && adaptiveBatch == other.adaptiveBatch
+					&& targetLatencyMillis == other.targetLatencyMillis && queueCapacity == other.queueCapacity
+					&& dropPolicy == other.dropPolicy && Objects.equals(loggerGroups, other.loggerGroups)
+					&& Objects.equals(destinations, other.destinations)
+					&& publisherBufferSize == other.publisherBufferSize && maxAttributes == other.maxAttributes
+					&& maxKeyLength == other.maxKeyLength && maxValueLength == other.maxValueLength
+					&& Objects.equals(attributeTypes, other.attributeTypes)
+					&& flightRecorderSize == other.flightRecorderSize
+					&& Objects.equals(flightRecorderKey, other.flightRecorderKey);
+		}
+
+		/**
+		 * Returns name of manager for this data. Manager name is built from tracker source name and type.
+		 *
+		 * @return manager name
+		 */
+		public String getManagerName() {
+			return "TNT4J:" + sourceName + ":" + sourceType;
+		}
+
+		public FactoryData setSnapCategory(String snapCategory) {
+			this.snapCategory = snapCategory;
+			return this;
+		}
+
+		public FactoryData setMaxActivitySize(int maxActivitySize) {
+			this.maxActivitySize = maxActivitySize;
+			return this;
+		}
+
+		public FactoryData setStreamActivities(boolean streamActivities) {
+			this.streamActivities = streamActivities;
+			return this;
+		}
+
+		public FactoryData setMetricsOnException(boolean metricsOnException) {
+			this.metricsOnException = metricsOnException;
+			return this;
+		}
+
+		public FactoryData setMetricsFrequency(long metricsFrequency) {
+			this.metricsFrequency = metricsFrequency;
+			return this;
+		}
+
+		public FactoryData setMetricsCooldown(long metricsCooldown) {
+			this.metricsCooldown = metricsCooldown;
+			return this;
+		}
+
+		public FactoryData setLatencyInterval(long latencyInterval) {
+			this.latencyInterval = latencyInterval;
+			return this;
+		}
+
+		public FactoryData setLatencyThreshold(long latencyThreshold) {
+			this.latencyThreshold = latencyThreshold;
+			return this;
+		}
+
+		public FactoryData setIncludeLocation(boolean includeLocation) {
+			this.includeLocation = includeLocation;
+			return this;
+		}
+
+		public FactoryData setBatchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		public FactoryData setLingerMillis(long lingerMillis) {
+			this.lingerMillis = lingerMillis;
+			return this;
+		}
+
+		public FactoryData setAdaptiveBatch(boolean adaptiveBatch) {
+			this.adaptiveBatch = adaptiveBatch;
+			return this;
+		}
+
+		public FactoryData setTargetLatencyMillis(long targetLatencyMillis) {
+			this.targetLatencyMillis = targetLatencyMillis;
+			return this;
+		}
+
+		public FactoryData setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		public FactoryData setDropPolicy(LaneQueue.DropPolicy dropPolicy) {
+			this.dropPolicy = dropPolicy;
+			return this;
+		}
+
+		public FactoryData setLoggerGroups(String loggerGroups) {
+			this.loggerGroups = loggerGroups;
+			return this;
+		}
+
+		public FactoryData setDestinations(List<TNT4JDestination> destinations) {
+			this.destinations = destinations;
+			return this;
+		}
+
+		public FactoryData setPublisherBufferSize(int publisherBufferSize) {
+			this.publisherBufferSize = publisherBufferSize;
+			return this;
+		}
+
+		public FactoryData setMaxAttributes(int maxAttributes) {
+			this.maxAttributes = maxAttributes;
+			return this;
+		}
+
+		public FactoryData setMaxKeyLength(int maxKeyLength) {
+			this.maxKeyLength = maxKeyLength;
+			return this;
+		}
+
+		public FactoryData setMaxValueLength(int maxValueLength) {
+			this.maxValueLength = maxValueLength;
+			return this;
+		}
+
+		public FactoryData setAttributeTypes(String attributeTypes) {
+			this.attributeTypes = attributeTypes;
+			return this;
+		}
+
+		public FactoryData setFlightRecorderSize(int flightRecorderSize) {
+			this.flightRecorderSize = flightRecorderSize;
+			return this;
+		}
+
+		public FactoryData setFlightRecorderKey(String flightRecorderKey) {
+			this.flightRecorderKey = flightRecorderKey;
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			return "FactoryData{" //
+					+ "sourceName=" + sourceName //
+					+ ", sourceType=" + sourceType //
+					+ ", snapCategory=" + snapCategory //
+					+ ", includeLocation=" + includeLocation //
+					+ ", batchSize=" + batchSize //
+					+ ", maxActivitySize=" + maxActivitySize //
+					+ ", streamActivities=" + streamActivities //
+					+ ", flightRecorderSize=" + flightRecorderSize //
+					+ "}";
+		}
+	}
+
+	/**
+	 * Factory creating {@link TNT4JManager} instances.
+	 */
+	private static class TNT4JManagerFactory implements ManagerFactory<TNT4JManager, FactoryData> {
+		@Override
+		public TNT4JManager createManager(String name, FactoryData data) {
+			TNT4JManager manager = new TNT4JManager(data.configuration, data.configuration.getLoggerContext(), name,
+					data.sourceName, data.sourceType, data.snapCategory, data.maxActivitySize,
+					data.metricsOnException, data.metricsFrequency);
+			manager.applyData(data);
+			return manager;
+		}
+	}
 }
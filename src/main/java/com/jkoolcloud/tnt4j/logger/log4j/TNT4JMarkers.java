@@ -0,0 +1,58 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+
+/**
+ * Log4j markers used to control TNT4J activities without {@code #beg}/{@code #end} hashtags in log messages. Marked
+ * events are recognized by {@link com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager} by marker reference, so no message
+ * formatting and parsing is performed for them.
+ * <p>
+ * Activity name is taken from log4j {@code ThreadContext} value keyed by {@link #ACTIVITY_ID_KEY}, or logger name if
+ * context value is not set:
+ * <p>
+ * {@code ThreadContext.put(TNT4JMarkers.ACTIVITY_ID_KEY, "OrderProcessing");}
+ * <p>
+ * {@code logger.info(TNT4JMarkers.ACTIVITY_BEGIN, "Starting order processing");}
+ * <p>
+ * {@code logger.debug("Operation processing #opn=save #rsn=" + filename);}
+ * <p>
+ * {@code logger.info(TNT4JMarkers.ACTIVITY_END, "Finished order processing");}
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JAppender
+ */
+public final class TNT4JMarkers {
+	/**
+	 * Marker to begin TNT4J activity
+	 */
+	public static final Marker ACTIVITY_BEGIN = MarkerManager.getMarker("TNT4J_ACTIVITY_BEGIN");
+	/**
+	 * Marker to end TNT4J activity
+	 */
+	public static final Marker ACTIVITY_END = MarkerManager.getMarker("TNT4J_ACTIVITY_END");
+	/**
+	 * Log4j {@code ThreadContext} key carrying activity name for activity markers
+	 */
+	public static final String ACTIVITY_ID_KEY = "tnt4j.activity";
+
+	private TNT4JMarkers() {
+	}
+}
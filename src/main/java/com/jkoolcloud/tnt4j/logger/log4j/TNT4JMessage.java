@@ -0,0 +1,158 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.message.AsynchronouslyFormattable;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.MultiformatMessage;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+
+/**
+ * Log4j {@link Message} carrying original TNT4J object (e.g. {@link com.jkoolcloud.tnt4j.tracker.TrackingEvent},
+ * {@link com.jkoolcloud.tnt4j.tracker.TrackingActivity} or {@link com.jkoolcloud.tnt4j.core.Snapshot}) instead of
+ * string rendered by TNT4J event formatter. Object is rendered lazily, only once and only when layout requests it:
+ * {@code JSON} format (e.g. requested by {@code JsonTemplateLayout}) is rendered using TNT4J JSON formatter, while
+ * plain text is rendered using sink bound event formatter.
+ * <p>
+ * Message is {@link AsynchronouslyFormattable}, so async loggers and {@code AsyncAppender} pass it to background
+ * thread unrendered (instead of rendering it eagerly on logging thread), relying on TNT4J objects not being changed
+ * once reported to sink. Rendered strings are cached in volatile fields: concurrent first requests may render same
+ * format more than once, but every reader sees fully rendered string.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.Log4JEventSink
+ */
+@AsynchronouslyFormattable
+public class TNT4JMessage implements Message, StringBuilderFormattable, MultiformatMessage {
+	private static final long serialVersionUID = 2883457262108745839L;
+
+	/**
+	 * JSON message format name
+	 */
+	public static final String FORMAT_JSON = "JSON";
+	/**
+	 * Plain text message format name
+	 */
+	public static final String FORMAT_TEXT = "TEXT";
+
+	private static final String[] FORMATS = { FORMAT_JSON, FORMAT_TEXT };
+
+	private final transient Object trackable;
+	private final transient Supplier<String> textRenderer;
+	private final transient Supplier<String> jsonRenderer;
+	private final Throwable throwable;
+
+	private volatile String text;
+	private volatile String json;
+
+	/**
+	 * Create a new message for given TNT4J object.
+	 *
+	 * @param trackable
+	 *            TNT4J object to be logged
+	 * @param textRenderer
+	 *            renders object as plain text
+	 * @param jsonRenderer
+	 *            renders object as JSON, {@code null} - if JSON rendering is not available
+	 * @param throwable
+	 *            throwable associated with TNT4J object, or {@code null}
+	 */
+	public TNT4JMessage(Object trackable, Supplier<String> textRenderer, Supplier<String> jsonRenderer,
+			Throwable throwable) {
+		this.trackable = trackable;
+		this.textRenderer = textRenderer;
+		this.jsonRenderer = jsonRenderer;
+		this.throwable = throwable;
+	}
+
+	/**
+	 * Returns original TNT4J object carried by this message.
+	 *
+	 * @return TNT4J object, or {@code null} if message has been deserialized
+	 */
+	public Object getTrackable() {
+		return trackable;
+	}
+
+	@Override
+	public String getFormattedMessage() {
+		String t = text;
+		if (t == null) {
+			t = textRenderer == null ? String.valueOf(trackable) : textRenderer.get();
+			text = t;
+		}
+		return t;
+	}
+
+	@Override
+	public String getFormattedMessage(String[] formats) {
+		if (formats != null) {
+			for (String format : formats) {
+				String j = json;
+				if (FORMAT_JSON.equalsIgnoreCase(format) && (j != null || jsonRenderer != null)) {
+					if (j == null) {
+						j = jsonRenderer.get();
+						json = j;
+					}
+					return j;
+				}
+			}
+		}
+		return getFormattedMessage();
+	}
+
+	@Override
+	public String[] getFormats() {
+		return jsonRenderer == null && json == null ? new String[] { FORMAT_TEXT } : FORMATS.clone();
+	}
+
+	@Override
+	public void formatTo(StringBuilder buffer) {
+		buffer.append(getFormattedMessage());
+	}
+
+	@Override
+	public String getFormat() {
+		return getFormattedMessage();
+	}
+
+	@Override
+	public Object[] getParameters() {
+		return new Object[] { trackable };
+	}
+
+	@Override
+	public Throwable getThrowable() {
+		return throwable;
+	}
+
+	@Override
+	public String toString() {
+		return getFormattedMessage();
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		getFormattedMessage();
+		getFormattedMessage(FORMATS);
+		out.defaultWriteObject();
+	}
+}
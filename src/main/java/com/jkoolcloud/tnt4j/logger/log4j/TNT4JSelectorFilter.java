@@ -0,0 +1,362 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.config.Node;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.filter.AbstractFilter;
+import org.apache.logging.log4j.message.Message;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.repository.TokenRepository;
+import com.jkoolcloud.tnt4j.repository.TokenRepositoryEvent;
+import com.jkoolcloud.tnt4j.repository.TokenRepositoryListener;
+import com.jkoolcloud.tnt4j.utils.Utils;
+
+/**
+ * Log4j filter gating events using TNT4J tracking selector tokens (e.g. {@code config/tnt4j-tokens.properties}) before
+ * log4j {@code LogEvent} is created.
+ * <p>
+ * Token repository is compiled into immutable {@link TokenTrie}, which is swapped atomically when repository changes,
+ * so filter evaluation takes O(depth) lookup and no locking. When {@code prefixMatch} is enabled, logger names not
+ * defined in repository resolve to the token of their longest defined dotted prefix (e.g. {@code com.myco} token
+ * applies to {@code com.myco.service.Api} logger). Tokens are defined same way as for
+ * {@link com.jkoolcloud.tnt4j.selector.DefaultTrackingSelector}: {@code key=level[:value-pattern]}. Event key is
+ * logger name or marker name (as defined by {@code keyBy}), and value matched against token value pattern is the other
+ * one. Events having key defined in repository and matching token get {@code onMatch} result (default
+ * {@code NEUTRAL}), events having key defined but not matching token get {@code onMismatch} result (default
+ * {@code DENY}). Events having key not defined in repository get {@code NEUTRAL} result.
+ * <p>
+ * Sample configuration:
+ * <p>
+ * {@code <Tnt4jSelectorFilter repository="config/tnt4j-tokens.properties" prefixMatch="true" keyBy="LOGGER"/>}
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.selector.TrackingSelector
+ */
+@Plugin(name = "Tnt4jSelectorFilter", category = Node.CATEGORY, elementType = Filter.ELEMENT_TYPE, printObject = true)
+public class TNT4JSelectorFilter extends AbstractFilter implements TokenRepositoryListener {
+	/**
+	 * Defines which log4j event field is used as selector token key.
+	 */
+	public enum KeyBy {
+		/**
+		 * Logger name is used as key, marker name as value
+		 */
+		LOGGER,
+		/**
+		 * Marker name is used as key, logger name as value
+		 */
+		MARKER
+	}
+
+	private final TokenRepository repository;
+	private final KeyBy keyBy;
+	private final boolean prefixMatch;
+
+	private volatile TokenTrie<SelectorToken> tokens = TokenTrie.empty();
+
+	public static class Builder extends AbstractFilterBuilder<Builder>
+			implements org.apache.logging.log4j.core.util.Builder<TNT4JSelectorFilter> {
+
+		@PluginBuilderAttribute
+		private String repository;
+
+		@PluginBuilderAttribute
+		private boolean prefixMatch;
+
+		@PluginBuilderAttribute
+		private KeyBy keyBy = KeyBy.LOGGER;
+
+		@Override
+		public TNT4JSelectorFilter build() {
+			TokenRepository tokenRepository = Utils.isEmpty(repository) ? new CompiledTokenRepository()
+					: new CompiledTokenRepository(repository, false);
+			return new TNT4JSelectorFilter(tokenRepository, keyBy, prefixMatch, getOnMatch(), getOnMismatch());
+		}
+
+		public Builder setRepository(String repository) {
+			this.repository = repository;
+			return asBuilder();
+		}
+
+		public Builder setPrefixMatch(boolean prefixMatch) {
+			this.prefixMatch = prefixMatch;
+			return asBuilder();
+		}
+
+		public Builder setKeyBy(KeyBy keyBy) {
+			this.keyBy = keyBy;
+			return asBuilder();
+		}
+	}
+
+	/**
+	 * @return a builder for a TNT4JSelectorFilter.
+	 */
+	@PluginBuilderFactory
+	public static Builder newBuilder() {
+		return new Builder().setOnMatch(Result.NEUTRAL).setOnMismatch(Result.DENY);
+	}
+
+	/**
+	 * Create a filter instance.
+	 *
+	 * @param repository
+	 *            selector tokens repository
+	 * @param keyBy
+	 *            log4j event field used as token key
+	 * @param prefixMatch
+	 *            flag indicating whether undefined keys resolve to their longest defined dotted prefix token
+	 * @param onMatch
+	 *            result for events matching defined token
+	 * @param onMismatch
+	 *            result for events not matching defined token
+	 */
+	protected TNT4JSelectorFilter(TokenRepository repository, KeyBy keyBy, boolean prefixMatch, Result onMatch,
+			Result onMismatch) {
+		super(onMatch, onMismatch);
+
+		this.repository = repository;
+		this.keyBy = keyBy == null ? KeyBy.LOGGER : keyBy;
+		this.prefixMatch = prefixMatch;
+	}
+
+	@Override
+	public void start() {
+		super.start();
+		try {
+			repository.addRepositoryListener(this);
+			repository.open();
+			reloadTokens();
+		} catch (Exception e) {
+			LOGGER.error("Unable to open token repository={}", repository, e);
+		}
+	}
+
+	@Override
+	public boolean stop(long timeout, TimeUnit timeUnit) {
+		setStopping();
+		repository.removeRepositoryListener(this);
+		Utils.close(repository);
+		setStopped();
+		return true;
+	}
+
+	@Override
+	public void repositoryChanged(TokenRepositoryEvent event) {
+		reloadTokens();
+	}
+
+	@Override
+	public void repositoryError(TokenRepositoryEvent event) {
+		LOGGER.warn("Token repository={} error: {}", repository, event, event.getCause());
+	}
+
+	/**
+	 * Compiles token repository into new immutable tokens snapshot and swaps it with current one.
+	 */
+	protected void reloadTokens() {
+		Map<String, SelectorToken> newTokens = new HashMap<>();
+		if (repository.isDefined()) {
+			for (Iterator<? extends Object> keys = repository.getKeys(); keys.hasNext();) {
+				String key = String.valueOf(keys.next());
+				try {
+					SelectorToken token = SelectorToken.parse(repository.get(key));
+					if (token != null) {
+						newTokens.put(key, token);
+					}
+				} catch (Exception e) {
+					LOGGER.warn("Failed to process selector token key={}, repository={}", key, repository, e);
+				}
+			}
+		}
+		tokens = TokenTrie.compile(newTokens);
+	}
+
+	/**
+	 * Checks whether given key is set for given severity level and value, like
+	 * {@link com.jkoolcloud.tnt4j.selector.TrackingSelector#isSet(OpLevel, Object, Object)} does.
+	 *
+	 * @param sev
+	 *            severity level
+	 * @param key
+	 *            token key
+	 * @param value
+	 *            value to match against token value pattern, {@code null} - matches any
+	 * @return {@code true} if key is defined and matches given level and value, {@code false} - otherwise
+	 */
+	public boolean isSet(OpLevel sev, String key, String value) {
+		SelectorToken token = getToken(key);
+		return token != null && token.isMatch(sev, value);
+	}
+
+	private SelectorToken getToken(String key) {
+		TokenTrie<SelectorToken> current = tokens;
+		return prefixMatch ? current.getNearest(key) : current.get(key);
+	}
+
+	private Result filter(Level level, Marker marker, String loggerName) {
+		String markerName = marker == null ? null : marker.getName();
+		String key = keyBy == KeyBy.MARKER ? markerName : loggerName;
+		if (key == null) {
+			return Result.NEUTRAL;
+		}
+		SelectorToken token = getToken(key);
+		if (token == null) {
+			return Result.NEUTRAL;
+		}
+		return token.isMatch(TNT4JManager.toOpLevel(level), keyBy == KeyBy.MARKER ? loggerName : markerName)
+				? onMatch : onMismatch;
+	}
+
+	@Override
+	public Result filter(LogEvent event) {
+		return filter(event.getLevel(), event.getMarker(), event.getLoggerName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, Message msg, Throwable t) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, Object msg, Throwable t) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object... params) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5, Object p6) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5, Object p6, Object p7) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5, Object p6, Object p7, Object p8) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public Result filter(Logger logger, Level level, Marker marker, String msg, Object p0, Object p1, Object p2,
+			Object p3, Object p4, Object p5, Object p6, Object p7, Object p8, Object p9) {
+		return filter(level, marker, logger.getName());
+	}
+
+	@Override
+	public String toString() {
+		return "repository=" + repository + ", keyBy=" + keyBy + ", prefixMatch=" + prefixMatch + ", tokens=" + tokens.size();
+	}
+
+	/**
+	 * Immutable compiled selector token: severity limit and optional value pattern.
+	 */
+	static final class SelectorToken {
+		private final OpLevel sevLimit;
+		private final Pattern valuePattern;
+
+		private SelectorToken(OpLevel sevLimit, Pattern valuePattern) {
+			this.sevLimit = sevLimit;
+			this.valuePattern = valuePattern;
+		}
+
+		/**
+		 * Parses token definition {@code level[:value-pattern]}.
+		 *
+		 * @param definition
+		 *            token definition
+		 * @return compiled token, or {@code null} if definition is empty
+		 */
+		static SelectorToken parse(Object definition) {
+			String def = definition == null ? "" : String.valueOf(definition).trim();
+			if (def.isEmpty()) {
+				return null;
+			}
+			int idx = def.indexOf(':');
+			if (idx > 0) {
+				return new SelectorToken(OpLevel.valueOf(def.substring(0, idx).toUpperCase()),
+						Pattern.compile(def.substring(idx + 1)));
+			}
+			return new SelectorToken(OpLevel.valueOf(def.toUpperCase()), null);
+		}
+
+		boolean isMatch(OpLevel sev, String value) {
+			if (sev.ordinal() < sevLimit.ordinal()) {
+				return false;
+			}
+			return value == null || valuePattern == null || valuePattern.matcher(value).matches();
+		}
+	}
+}
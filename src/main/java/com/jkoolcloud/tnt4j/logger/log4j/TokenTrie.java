@@ -0,0 +1,225 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.*;
+
+/**
+ * Immutable prefix tree of tokens keyed by dotted names (e.g. logger names {@code com.myco.service}). Exact lookups
+ * take single hash map lookup, nearest prefix lookups take O(depth) steps matching key segments in place (no segment
+ * strings are created). Lookups require no locking, so instance can be shared by any number of threads and replaced
+ * atomically by a newly compiled one.
+ *
+ * @param <V>
+ *            token value type
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.CompiledTokenRepository
+ */
+public final class TokenTrie<V> {
+	private static final TokenTrie<?> EMPTY = new TokenTrie<>(new Node<>(), Collections.emptyMap(),
+			Collections.emptyList());
+
+	private final Node<V> root;
+	private final Map<String, V> exact;
+	private final List<String> keys;
+
+	private TokenTrie(Node<V> root, Map<String, V> exact, List<String> keys) {
+		this.root = root;
+		this.exact = exact;
+		this.keys = keys;
+	}
+
+	/**
+	 * Returns empty token trie.
+	 *
+	 * @param <V>
+	 *            token value type
+	 * @return empty token trie
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V> TokenTrie<V> empty() {
+		return (TokenTrie<V>) EMPTY;
+	}
+
+	/**
+	 * Compiles given tokens map into immutable token trie. Tokens having {@code null} values are skipped.
+	 *
+	 * @param tokens
+	 *            tokens map keyed by dotted names
+	 * @param <V>
+	 *            token value type
+	 * @return compiled token trie
+	 */
+	public static <V> TokenTrie<V> compile(Map<String, ? extends V> tokens) {
+		Node<V> root = new Node<>();
+		Map<String, V> exact = new HashMap<>(tokens.size() * 2);
+		List<String> keys = new ArrayList<>(tokens.size());
+		for (Map.Entry<String, ? extends V> token : tokens.entrySet()) {
+			if (token.getKey() == null || token.getValue() == null) {
+				continue;
+			}
+			Node<V> node = root;
+			for (String segment : token.getKey().split("\\.", -1)) {
+				node = node.add(segment);
+			}
+			node.value = token.getValue();
+			exact.put(token.getKey(), token.getValue());
+			keys.add(token.getKey());
+		}
+		root.freeze();
+		return new TokenTrie<>(root, exact, Collections.unmodifiableList(keys));
+	}
+
+	/**
+	 * Returns token value defined for exactly given key.
+	 *
+	 * @param key
+	 *            token key
+	 * @return token value, or {@code null} if key is not defined
+	 */
+	public V get(String key) {
+		return key == null ? null : exact.get(key);
+	}
+
+	/**
+	 * Returns token value defined for longest dotted prefix of given key, e.g. for key {@code com.myco.service.Api}
+	 * token defined for {@code com.myco.service} is returned when there is no token for key itself.
+	 *
+	 * @param key
+	 *            token key
+	 * @return nearest token value, or {@code null} if neither key nor any of its prefixes is defined
+	 */
+	public V getNearest(String key) {
+		if (key == null) {
+			return null;
+		}
+		V value = exact.get(key);
+		return value != null ? value : lookupNearest(key);
+	}
+
+	/**
+	 * Returns defined token keys.
+	 *
+	 * @return unmodifiable list of token keys
+	 */
+	public List<String> keys() {
+		return keys;
+	}
+
+	/**
+	 * Returns number of defined tokens.
+	 *
+	 * @return number of defined tokens
+	 */
+	public int size() {
+		return keys.size();
+	}
+
+	private V lookupNearest(String key) {
+		Node<V> node = root;
+		V found = null;
+		int start = 0;
+		int length = key.length();
+		while (start <= length) {
+			int end = start;
+			int hash = 0;
+			for (char c; end < length && (c = key.charAt(end)) != '.'; end++) {
+				hash = 31 * hash + c;
+			}
+			node = node.child(key, start, end, hash);
+			if (node == null) {
+				break;
+			}
+			if (node.value != null) {
+				found = node.value;
+			}
+			start = end + 1;
+		}
+		return found;
+	}
+
+	@Override
+	public String toString() {
+		return "TokenTrie{size=" + keys.size() + "}";
+	}
+
+	/**
+	 * Trie node. While compiling, children are collected into hash map, which is then frozen into open addressing
+	 * table, so children can be matched against key region using segment hash code and
+	 * {@link String#regionMatches(int, String, int, int)}.
+	 */
+	private static final class Node<V> {
+		private Map<String, Node<V>> building = Collections.emptyMap();
+		private String[] segments;
+		private Node<V>[] children;
+		private V value;
+
+		private Node<V> add(String segment) {
+			if (building.isEmpty()) {
+				building = new HashMap<>(4);
+			}
+			return building.computeIfAbsent(segment, s -> new Node<>());
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <V> Node<V>[] newNodes(int capacity) {
+			return (Node<V>[]) new Node<?>[capacity];
+		}
+
+		private void freeze() {
+			if (!building.isEmpty()) {
+				int capacity = Integer.highestOneBit(building.size() * 2 - 1) << 1;
+				segments = new String[capacity];
+				children = newNodes(capacity);
+				for (Map.Entry<String, Node<V>> child : building.entrySet()) {
+					int i = slot(child.getKey().hashCode(), capacity);
+					while (segments[i] != null) {
+						i = (i + 1) & (capacity - 1);
+					}
+					segments[i] = child.getKey();
+					children[i] = child.getValue();
+					child.getValue().freeze();
+				}
+			}
+			building = null;
+		}
+
+		private Node<V> child(String key, int start, int end, int hash) {
+			if (segments == null) {
+				return null;
+			}
+			int mask = segments.length - 1;
+			int len = end - start;
+			for (int i = slot(hash, segments.length);; i = (i + 1) & mask) {
+				String segment = segments[i];
+				if (segment == null) {
+					return null;
+				}
+				if (segment.length() == len && segment.hashCode() == hash
+						&& key.regionMatches(start, segment, 0, len)) {
+					return children[i];
+				}
+			}
+		}
+
+		private static int slot(int hash, int capacity) {
+			return (hash ^ (hash >>> 16)) & (capacity - 1);
+		}
+	}
+}
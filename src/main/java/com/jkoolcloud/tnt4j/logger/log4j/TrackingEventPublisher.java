@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * {@link java.util.concurrent.Flow.Publisher} of tracking events built by {@link TNT4JManager}, for in-process
+ * consumers (e.g. alerting rules, local aggregators) wanting structured events without parsing logs or going through
+ * event sink.
+ * <p>
+ * Every subscriber gets own bounded buffer and items are delivered by demand ({@code Subscription.request(n)}) on
+ * executor threads. Logging thread never waits for subscribers: when subscriber buffer is full, event is dropped for
+ * that subscriber only, so slow subscriber gets sampled stream while other subscribers are not affected.
+ * <p>
+ * Events are published after they were reported to TNT4J tracker. Published events are shared with TNT4J tracker and
+ * other subscribers, so subscribers must treat them as read-only.
+ *
+ * @version $Revision: 1 $
+ *
+ * @see com.jkoolcloud.tnt4j.logger.log4j.TNT4JManager#getPublisher()
+ */
+public class TrackingEventPublisher implements Flow.Publisher<TrackingEvent>, AutoCloseable {
+	private final SubmissionPublisher<TrackingEvent> publisher;
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Constructs a new tracking events publisher.
+	 *
+	 * @param bufferSize
+	 *            maximum number of events buffered per subscriber
+	 */
+	public TrackingEventPublisher(int bufferSize) {
+		publisher = new SubmissionPublisher<>(defaultExecutor(), Math.max(1, bufferSize));
+	}
+
+	// same as SubmissionPublisher default: common pool, unless it does not support parallelism
+	private static Executor defaultExecutor() {
+		if (ForkJoinPool.getCommonPoolParallelism() > 1) {
+			return ForkJoinPool.commonPool();
+		}
+		return r -> {
+			Thread t = new Thread(r, "TNT4J-publisher");
+			t.setDaemon(true);
+			t.start();
+		};
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super TrackingEvent> subscriber) {
+		publisher.subscribe(subscriber);
+	}
+
+	/**
+	 * Checks whether publisher has any subscribers.
+	 *
+	 * @return {@code true} if publisher has subscribers, {@code false} - otherwise
+	 */
+	public boolean hasSubscribers() {
+		return publisher.hasSubscribers();
+	}
+
+	/**
+	 * Publishes tracking event to all subscribers without blocking. Event is dropped for subscribers having full
+	 * buffer.
+	 *
+	 * @param event
+	 *            tracking event to publish
+	 */
+	public void publish(TrackingEvent event) {
+		if (publisher.isClosed() || !publisher.hasSubscribers()) {
+			return;
+		}
+		published.incrementAndGet();
+		publisher.offer(event, (subscriber, item) -> {
+			dropped.incrementAndGet();
+			return false;
+		});
+	}
+
+	/**
+	 * Returns number of subscribers.
+	 *
+	 * @return number of subscribers
+	 */
+	public int getSubscriberCount() {
+		return publisher.getNumberOfSubscribers();
+	}
+
+	/**
+	 * Returns number of events published.
+	 *
+	 * @return number of published events
+	 */
+	public long getPublishedCount() {
+		return published.get();
+	}
+
+	/**
+	 * Returns number of event deliveries dropped because of full subscriber buffers (event dropped for {@code n}
+	 * subscribers is counted {@code n} times).
+	 *
+	 * @return number of dropped deliveries
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Closes publisher: subscribers get {@code onComplete} after buffered events are delivered.
+	 */
+	@Override
+	public void close() {
+		publisher.close();
+	}
+}
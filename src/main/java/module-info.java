@@ -19,6 +19,8 @@
  */
 module com.jkoolcloud.tnt4j.logger.log4j {
     requires java.base;
+    requires java.management;
+    requires static jdk.jfr;
     requires com.jkoolcloud.tnt4j.core;
     requires org.apache.logging.log4j;
     requires org.apache.logging.log4j.core;
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Runs adaptive batching against stand-in collector (recording sink) injecting per flush round trip and per item
+ * latency, and compares delivered throughput, end-to-end p99 latency and tuned batch size with fixed batch sizes.
+ */
+public class AdaptiveBatchTest {
+	private static final int MAX_BATCH_SIZE = 1_000;
+	private static final long TARGET_LATENCY_MILLIS = 10;
+	private static final long FLUSH_DELAY_MICROS = 1_000;
+
+	/**
+	 * Measurements of converged second half of single run.
+	 */
+	static final class Run {
+		double throughput;
+		long p99Nanos;
+		double meanBatchSize;
+
+		@Override
+		public String toString() {
+			return String.format("throughput=%.0f/s, p99=%.2fms, batchSize=%.0f", throughput, p99Nanos / 1e6,
+					meanBatchSize);
+		}
+	}
+
+	static TNT4JManager newManager(String source, int batchSize, boolean adaptive) {
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setBatchSize(batchSize) //
+						.setLingerMillis(20) //
+						.setAdaptiveBatch(adaptive) //
+						.setTargetLatencyMillis(TARGET_LATENCY_MILLIS) //
+						.setMetricsOnException(false));
+		manager.startup();
+		RecordingSink sink = RecordingSink.get(source);
+		sink.setKeepItems(false);
+		sink.setFlushDelayMicros(FLUSH_DELAY_MICROS);
+		return manager;
+	}
+
+	/**
+	 * Logs events as fast as single synchronous logging thread can for given time, measuring second half of the run.
+	 */
+	static Run run(TNT4JManager manager, String source, long itemDelayMicros, long millis) {
+		RecordingSink sink = RecordingSink.get(source);
+		sink.setDelayMicros(itemDelayMicros);
+		long start = System.nanoTime();
+		long measureFrom = start + TimeUnit.MILLISECONDS.toNanos(millis / 2);
+		long end = start + TimeUnit.MILLISECONDS.toNanos(millis);
+		LongAdder delivered = new LongAdder();
+		Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+		sink.setObserver(item -> {
+			long now = System.nanoTime();
+			if (now >= measureFrom && item instanceof TrackingEvent) {
+				String msg = ((TrackingEvent) item).getMessage();
+				latencies.add(now - Long.parseLong(msg.substring(msg.indexOf("t=") + 2)));
+				delivered.increment();
+			}
+		});
+
+		long batchSizeSum = 0, samples = 0, now;
+		while ((now = System.nanoTime()) < end) {
+			manager.tnt(Log4jLogEvent.newBuilder() //
+					.setLoggerName("com.test.Adaptive") //
+					.setLevel(Level.INFO) //
+					.setMessage(new SimpleMessage("item t=" + now)) //
+					.build());
+			if (now >= measureFrom) {
+				AdaptiveBatch batching = manager.getAdaptiveBatch();
+				batchSizeSum += batching == null ? manager.getBatchSize() : batching.getBatchSize();
+				samples++;
+			}
+		}
+		sink.setObserver(null);
+
+		Run run = new Run();
+		run.throughput = delivered.sum() * 1e9 / (end - measureFrom);
+		long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+		run.p99Nanos = sorted.length == 0 ? Long.MAX_VALUE : sorted[(int) (sorted.length * 0.99)];
+		run.meanBatchSize = (double) batchSizeSum / Math.max(1, samples);
+		return run;
+	}
+
+	@Test
+	public void throughputAndLatencyConverge() {
+		TNT4JManager adaptive = newManager("test.adaptive.tuned", MAX_BATCH_SIZE, true);
+		TNT4JManager small = newManager("test.adaptive.small", 1, false);
+		TNT4JManager large = newManager("test.adaptive.large", MAX_BATCH_SIZE, false);
+		try {
+			Run fast = run(adaptive, "test.adaptive.tuned", 20, 2_000);
+			// collector slows down: batch size has to shrink to stay within target latency
+			Run slow = run(adaptive, "test.adaptive.tuned", 60, 2_000);
+			Run fixedSmall = run(small, "test.adaptive.small", 20, 1_000);
+			Run fixedLarge = run(large, "test.adaptive.large", 20, 1_000);
+			assertTrue(fast.meanBatchSize > 1 && fast.meanBatchSize < MAX_BATCH_SIZE, "fast " + fast);
+			assertTrue(slow.meanBatchSize > 1 && slow.meanBatchSize < fast.meanBatchSize, "slow " + slow);
+			assertTrue(fast.throughput > 2 * fixedSmall.throughput, "fast " + fast + ", small " + fixedSmall);
+			assertTrue(fast.p99Nanos < fixedLarge.p99Nanos, "fast " + fast + ", large " + fixedLarge);
+			long bound = TimeUnit.MILLISECONDS.toNanos(5 * TARGET_LATENCY_MILLIS);
+			assertTrue(fast.p99Nanos < bound && slow.p99Nanos < bound, "fast " + fast + ", slow " + slow);
+		} finally {
+			adaptive.stop(1_000, TimeUnit.MILLISECONDS);
+			small.stop(1_000, TimeUnit.MILLISECONDS);
+			large.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+
+/**
+ * Test log4j appender collecting appended events in memory, attached directly to log4j logger.
+ *
+ * @version $Revision: 1 $
+ */
+public class CollectingAppender extends AbstractAppender {
+	private final List<LogEvent> events = new CopyOnWriteArrayList<>();
+	private final Logger logger;
+
+	private CollectingAppender(Logger logger) {
+		super("collecting", null, null, true, Property.EMPTY_ARRAY);
+		this.logger = logger;
+	}
+
+	/**
+	 * Creates started appender and attaches it to given log4j logger.
+	 *
+	 * @param loggerName
+	 *            log4j logger name
+	 * @return attached appender
+	 */
+	public static CollectingAppender attach(String loggerName) {
+		CollectingAppender appender = new CollectingAppender((Logger) LogManager.getLogger(loggerName));
+		appender.start();
+		appender.logger.addAppender(appender);
+		return appender;
+	}
+
+	/**
+	 * Detaches this appender from its logger and stops it.
+	 */
+	public void detach() {
+		logger.removeAppender(this);
+		stop();
+	}
+
+	/**
+	 * Returns collected events.
+	 *
+	 * @return collected events
+	 */
+	public List<LogEvent> getEvents() {
+		return events;
+	}
+
+	/**
+	 * Checks whether any collected event message contains given text.
+	 *
+	 * @param text
+	 *            text to look for
+	 * @return {@code true} if text is found, {@code false} - otherwise
+	 */
+	public boolean contains(String text) {
+		return events.stream().anyMatch(event -> event.getMessage().getFormattedMessage().contains(text));
+	}
+
+	@Override
+	public void append(LogEvent event) {
+		events.add(event.toImmutable());
+	}
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.TrackingLogger;
+import com.jkoolcloud.tnt4j.config.DefaultConfigFactory;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Tests {@link TNT4JDestination} fan-out by {@link TNT4JManager} and {@link DestinationWorker} isolation, failure
+ * policies and stop.
+ */
+public class DestinationWorkerTest {
+
+	static TrackingLogger newTracker(String source) throws IOException {
+		TrackingLogger tracker = TrackingLogger
+				.getInstance(DefaultConfigFactory.getInstance().getConfig(source, SourceType.APPL).build());
+		tracker.open();
+		return tracker;
+	}
+
+	static TNT4JDestination.Builder newDestination(String source) {
+		return TNT4JDestination.newBuilder().setName(source).setSourceName(source).setBatchSize(5).setLingerMillis(10)
+				.setRetryMillis(10);
+	}
+
+	static List<String> messages(RecordingSink sink) {
+		return sink.getItems().stream().filter(TrackingEvent.class::isInstance)
+				.map(item -> ((TrackingEvent) item).getMessage()).collect(Collectors.toList());
+	}
+
+	static void offer(DestinationWorker worker, TrackingLogger tracker, String... messages) {
+		for (String msg : messages) {
+			worker.offer(tracker.newEvent(OpLevel.INFO, "dest.test", (String) null, msg), OpLevel.INFO);
+		}
+	}
+
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean(), "condition not met in time");
+	}
+
+	@Test
+	public void fanOutNotDelayedBySlowDestination() throws Exception {
+		String source = "test.dest.fanout";
+		RecordingSink fast = RecordingSink.get("test.dest.fast");
+		RecordingSink slow = RecordingSink.get("test.dest.slow");
+		CountDownLatch release = new CountDownLatch(1);
+		slow.setObserver(item -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setDestinations(Arrays.asList(newDestination("test.dest.fast").build(),
+								newDestination("test.dest.slow").build())) //
+						.setMetricsOnException(false));
+		manager.startup();
+		try {
+			for (int i = 0; i < 10; i++) {
+				manager.tnt(Log4jLogEvent.newBuilder().setLoggerName("com.test.Dest").setLevel(Level.INFO)
+						.setMessage(new SimpleMessage("fan-out " + i)).build());
+			}
+			// slow destination worker is stuck sending, logging thread and other destination are not
+			assertEquals(10, messages(RecordingSink.get(source)).size());
+			await(() -> messages(fast).size() == 10);
+			assertTrue(messages(slow).isEmpty());
+
+			release.countDown();
+			await(() -> messages(slow).size() == 10);
+			assertEquals(messages(fast), messages(slow));
+		} finally {
+			release.countDown();
+			slow.setObserver(null);
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void retryResendsOnlyFailedItems() throws Exception {
+		String source = "test.dest.retry";
+		TrackingLogger tracker = newTracker(source);
+		RecordingSink sink = RecordingSink.get(source);
+		DestinationWorker worker = new DestinationWorker(
+				newDestination(source).setFailurePolicy(TNT4JDestination.FailurePolicy.RETRY).build(), tracker);
+		try {
+			sink.setFailures(1);
+			offer(worker, tracker, "1", "2", "3", "4", "5");
+			await(() -> worker.getSentCount() == 5);
+			// first item rejected, retried once along with items not sent yet
+			assertEquals(Arrays.asList("1", "2", "3", "4", "5"), messages(sink));
+			assertEquals(5, worker.getFailedCount());
+		} finally {
+			worker.stop(1_000);
+		}
+	}
+
+	@Test
+	public void retryAfterPartialFailureDoesNotDuplicate() throws Exception {
+		String source = "test.dest.partial";
+		TrackingLogger tracker = newTracker(source);
+		RecordingSink sink = RecordingSink.get(source);
+		// first two items accepted, third rejected
+		sink.setObserver(item -> {
+			if (sink.getItems().size() == 1) {
+				sink.setFailures(1);
+			}
+		});
+		DestinationWorker worker = new DestinationWorker(
+				newDestination(source).setFailurePolicy(TNT4JDestination.FailurePolicy.RETRY).build(), tracker);
+		try {
+			offer(worker, tracker, "1", "2", "3", "4", "5");
+			await(() -> worker.getSentCount() == 5);
+			assertEquals(Arrays.asList("1", "2", "3", "4", "5"), messages(sink));
+			assertEquals(3, worker.getFailedCount());
+		} finally {
+			sink.setObserver(null);
+			worker.stop(1_000);
+		}
+	}
+
+	@Test
+	public void dropDiscardsFailedItems() throws Exception {
+		String source = "test.dest.drop";
+		TrackingLogger tracker = newTracker(source);
+		RecordingSink sink = RecordingSink.get(source);
+		sink.setObserver(item -> {
+			if (sink.getItems().size() == 1) {
+				sink.setFailures(1);
+			}
+		});
+		DestinationWorker worker = new DestinationWorker(
+				newDestination(source).setFailurePolicy(TNT4JDestination.FailurePolicy.DROP).build(), tracker);
+		try {
+			offer(worker, tracker, "1", "2", "3", "4", "5");
+			await(() -> worker.getFailedCount() == 3);
+			sink.setObserver(null);
+			offer(worker, tracker, "6");
+			await(() -> worker.getSentCount() == 3);
+			assertEquals(Arrays.asList("1", "2", "6"), messages(sink));
+		} finally {
+			sink.setObserver(null);
+			worker.stop(1_000);
+		}
+	}
+
+	@Test
+	public void stopSendsQueuedItemsOrAbandonsStuckDestination() throws Exception {
+		String source = "test.dest.stop";
+		TrackingLogger tracker = newTracker(source);
+		RecordingSink sink = RecordingSink.get(source);
+		DestinationWorker worker = new DestinationWorker(newDestination(source).setLingerMillis(60_000).build(),
+				tracker);
+		offer(worker, tracker, "1", "2", "3");
+		assertTrue(worker.stop(5_000));
+		assertEquals(Arrays.asList("1", "2", "3"), messages(sink));
+
+		String stuckSource = "test.dest.stuck";
+		TrackingLogger stuckTracker = newTracker(stuckSource);
+		RecordingSink stuck = RecordingSink.get(stuckSource);
+		CountDownLatch release = new CountDownLatch(1);
+		stuck.setObserver(item -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		DestinationWorker stuckWorker = new DestinationWorker(newDestination(stuckSource).setBatchSize(1).build(),
+				stuckTracker);
+		try {
+			offer(stuckWorker, stuckTracker, "1", "2", "3");
+			await(() -> stuckWorker.getQueue().size() == 2);
+			// worker is stuck sending first item, rest of the items are abandoned
+			assertFalse(stuckWorker.stop(100));
+			assertEquals(2, stuckWorker.getQueue().size());
+		} finally {
+			release.countDown();
+			stuck.setObserver(null);
+			stuckWorker.stop(5_000);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.core.time.MutableInstant;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.core.Operation;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Tests microsecond timing of events built by {@link TNT4JManager}: event time taken from log4j event instant, and
+ * elapsed time computed as difference of event times of the same thread.
+ */
+public class EventTimingTest {
+	private static final long EPOCH_SECOND = 1_700_000_000L;
+
+	static LogEvent newEvent(String msg, long epochSecond, int nanoOfSecond) {
+		MutableInstant instant = new MutableInstant();
+		instant.initFromEpochSecond(epochSecond, nanoOfSecond);
+		return Log4jLogEvent.newBuilder() //
+				.setLoggerName("com.test.Timing") //
+				.setLevel(Level.INFO) //
+				.setMessage(new SimpleMessage(msg)) //
+				.setInstant(instant) //
+				.build();
+	}
+
+	@Test
+	public void timeKeepsMicroseconds() {
+		assertEquals(EPOCH_SECOND * 1_000_000 + 123_456,
+				TNT4JManager.getTimeUsec(newEvent("time", EPOCH_SECOND, 123_456_789)));
+	}
+
+	@Test
+	public void elapsedTimeIsDeltaOfThreadEventTimes() throws Exception {
+		String source = "test.timing.delta";
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setMetricsOnException(false));
+		manager.startup();
+		ExecutorService thread = Executors.newSingleThreadExecutor();
+		try {
+			// fresh thread, so no previous event of this thread is known
+			thread.submit(() -> {
+				manager.tnt(newEvent("first", EPOCH_SECOND, 100_000));
+				manager.tnt(newEvent("second", EPOCH_SECOND, 350_000));
+				manager.tnt(newEvent("explicit #elt=1000", EPOCH_SECOND, 500_000));
+			}).get(10, TimeUnit.SECONDS);
+
+			List<Operation> ops = RecordingSink.get(source).getItems().stream()
+					.filter(TrackingEvent.class::isInstance).map(item -> ((TrackingEvent) item).getOperation())
+					.collect(Collectors.toList());
+			assertEquals(3, ops.size());
+			long base = EPOCH_SECOND * 1_000_000;
+
+			assertEquals(0, ops.get(0).getElapsedTimeUsec());
+			assertEquals(base + 100, ops.get(0).getStartTime().getTimeUsec());
+
+			// 250us since first event, ending at event time
+			assertEquals(250, ops.get(1).getElapsedTimeUsec());
+			assertEquals(base + 100, ops.get(1).getStartTime().getTimeUsec());
+			assertEquals(base + 350, ops.get(1).getEndTime().getTimeUsec());
+
+			// elapsed time hashtag overrides delta
+			assertEquals(1_000, ops.get(2).getElapsedTimeUsec());
+			assertEquals(base + 500 - 1_000, ops.get(2).getStartTime().getTimeUsec());
+			assertEquals(base + 500, ops.get(2).getEndTime().getTimeUsec());
+		} finally {
+			thread.shutdownNow();
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+}
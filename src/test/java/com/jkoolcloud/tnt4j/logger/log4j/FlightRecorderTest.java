@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.core.OpCompCode;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Tests flight recorder of {@link TNT4JManager}: recording per logging thread, replay of recorded events, recorded
+ * events surviving manager reconfiguration and bounds of kept rings.
+ */
+public class FlightRecorderTest {
+
+	static LogEvent newEvent(Level level, String msg, long threadId, Throwable thrown) {
+		return Log4jLogEvent.newBuilder() //
+				.setLoggerName("com.test.Flight") //
+				.setLevel(level) //
+				.setMessage(new SimpleMessage(msg)) //
+				.setThreadId(threadId) //
+				.setThreadName("worker-" + threadId) //
+				.setThrown(thrown) //
+				.build();
+	}
+
+	static List<TrackingEvent> events(RecordingSink sink) {
+		return sink.getItems().stream().filter(TrackingEvent.class::isInstance).map(TrackingEvent.class::cast)
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void debugExceptionTriggersReplayWithAttributes() {
+		String source = "test.flight.replay";
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setFlightRecorderSize(10) //
+						.setMetricsOnException(false));
+		manager.startup();
+		RecordingSink sink = RecordingSink.get(source);
+		try {
+			// events of two logging threads, processed by the same (e.g. async logger) thread
+			manager.tnt(newEvent(Level.DEBUG, "thread 1 context #usr=alice #ccd=WARNING", 1, null));
+			manager.tnt(newEvent(Level.DEBUG, "thread 2 context #usr=bob", 2, null));
+			assertTrue(events(sink).isEmpty());
+
+			manager.tnt(newEvent(Level.DEBUG, "thread 1 failed", 1, new IllegalStateException("failure")));
+			List<TrackingEvent> sent = events(sink);
+			assertEquals(2, sent.size());
+
+			TrackingEvent replayed = sent.get(0);
+			assertEquals("thread 1 context #usr=alice #ccd=WARNING", replayed.getMessage());
+			assertEquals("alice", replayed.getOperation().getUser());
+			assertEquals(OpCompCode.WARNING, replayed.getOperation().getCompCode());
+			assertTrue(replayed.getTag().contains("worker-1"));
+
+			TrackingEvent trigger = sent.get(1);
+			assertEquals("thread 1 failed", trigger.getMessage());
+			assertTrue(trigger.getTag().contains("worker-1"));
+		} finally {
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void reconfigurationKeepsUnchangedComponents() {
+		String source = "test.flight.reconfigure";
+		TNT4JManager manager = TNT4JManager.getManager(newData(source, 100));
+		manager.startup();
+		RecordingSink sink = RecordingSink.get(source);
+		try {
+			manager.tnt(newEvent(Level.DEBUG, "context before reconfiguration", 1, null));
+			AdaptiveBatch batching = manager.getAdaptiveBatch();
+			HashtagParser parser = manager.getHashtagParser();
+
+			// appender reconfigured: other settings change, recorder, parser and batching settings do not
+			manager.updateData(newData(source, 50));
+			assertSame(batching, manager.getAdaptiveBatch());
+			assertSame(parser, manager.getHashtagParser());
+
+			manager.tnt(newEvent(Level.ERROR, "failed after reconfiguration", 1, null));
+			manager.flushBatch(true);
+			// replayed DEBUG event is batched in normal lane, ERROR trigger in urgent lane
+			List<String> sent = events(sink).stream().map(TrackingEvent::getMessage).collect(Collectors.toList());
+			assertEquals(2, sent.size());
+			assertTrue(sent.contains("context before reconfiguration"), sent.toString());
+		} finally {
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void drainedRingDropped() {
+		FlightRecorder recorder = new FlightRecorder(1_000, null);
+		for (int i = 0; i < 3; i++) {
+			recorder.record(newEvent(Level.DEBUG, "context " + i, 1, null), "context " + i, null, null, 0);
+		}
+		// records are allocated as ring fills up
+		assertEquals(3, recorder.getRecordCount());
+
+		List<String> drained = new ArrayList<>();
+		assertEquals(3, recorder.drain(newEvent(Level.ERROR, "failed", 1, null), r -> drained.add(r.getMessage())));
+		assertEquals(Arrays.asList("context 0", "context 1", "context 2"), drained);
+		assertEquals(0, recorder.getRingCount());
+		assertEquals(0, recorder.getRecordCount());
+		assertEquals(0, recorder.drain(newEvent(Level.ERROR, "failed again", 1, null), r -> fail()));
+	}
+
+	@Test
+	public void leastRecentlyUsedRingsEvicted() {
+		FlightRecorder recorder = new FlightRecorder(10, null, 100);
+		for (int t = 1; t <= 20; t++) {
+			for (int i = 0; i < 10; i++) {
+				recorder.record(newEvent(Level.DEBUG, "thread " + t, t, null), "thread " + t, null, null, 0);
+			}
+			assertTrue(recorder.getRecordCount() <= 100, "records: " + recorder.getRecordCount());
+		}
+		assertEquals(0, recorder.drain(newEvent(Level.ERROR, "failed", 1, null), r -> fail()));
+		assertEquals(10, recorder.drain(newEvent(Level.ERROR, "failed", 20, null), r -> {
+		}));
+	}
+
+	static TNT4JManager.FactoryData newData(String source, int maxActivitySize) {
+		return new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+				.setFlightRecorderSize(10) //
+				.setBatchSize(100) //
+				.setAdaptiveBatch(true) //
+				.setMaxActivitySize(maxActivitySize) //
+				.setMetricsOnException(false);
+	}
+}
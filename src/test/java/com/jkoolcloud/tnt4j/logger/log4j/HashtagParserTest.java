@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link HashtagParser} key, value and attribute count limits on oversized hashtags.
+ */
+public class HashtagParserTest {
+	private static final int HUGE = 4 * 1024 * 1024;
+
+	static String repeat(char ch, int count) {
+		StringBuilder sb = new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			sb.append(ch);
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void oversizedKeyTruncated() {
+		HashtagParser parser = new HashtagParser(10, 16, 32, "beg");
+		Map<String, String> attrs = new HashMap<>();
+		assertEquals(1, parser.parse(attrs, "msg #" + repeat('k', HUGE) + "=value", '#'));
+		assertEquals("value", attrs.get(repeat('k', 16)));
+
+		attrs.clear();
+		assertEquals(0, parser.parse(attrs, "msg #'quoted'key=value", '#'));
+		assertEquals("value", attrs.get("quotedkey"));
+	}
+
+	@Test
+	public void attributesOverLimitSkipped() {
+		HashtagParser parser = new HashtagParser(1, 16, 32, "beg");
+		Map<String, String> attrs = new HashMap<>();
+		assertEquals(2, parser.parse(attrs, "msg #a=1 #" + repeat('k', HUGE) + "=2 #begx=3 #beg=request", '#'));
+		assertEquals("1", attrs.get("a"));
+		assertEquals("request", attrs.get("beg"));
+		assertFalse(attrs.containsKey("begx"));
+		assertEquals("2", attrs.get(HashtagParser.OVERFLOW_KEY));
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.PropertySnapshot;
+import com.jkoolcloud.tnt4j.core.Trackable;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Tests {@link LaneQueue} locking, urgent lane bound and overflow, logger groups, and end-to-end latency bound of
+ * {@code ERROR} events under synthetic flood of lower severity events.
+ */
+public class LaneQueueTest {
+	private static final int PRODUCERS = 4;
+	private static final int EVENTS_PER_PRODUCER = 5_000;
+
+	static Trackable newItem() {
+		return new PropertySnapshot("lane.test");
+	}
+
+	@Test
+	public void offerDoesNotWaitForDrainConsumer() throws Exception {
+		LaneQueue queue = new LaneQueue(100, LaneQueue.DropPolicy.DROP_NEWEST);
+		queue.offer(newItem(), OpLevel.INFO);
+
+		CountDownLatch sending = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread drainer = new Thread(() -> queue.drain(item -> {
+			sending.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		drainer.start();
+		try {
+			assertTrue(sending.await(5, TimeUnit.SECONDS));
+			// drain consumer is stuck sending, offers still go through
+			Future<Boolean> offered = ForkJoinPool.commonPool()
+					.submit(() -> queue.offer(newItem(), OpLevel.ERROR));
+			assertTrue(offered.get(1, TimeUnit.SECONDS));
+			assertEquals(1, queue.size());
+		} finally {
+			release.countDown();
+			drainer.join(5_000);
+		}
+	}
+
+	@Test
+	public void urgentLaneIsBounded() {
+		LaneQueue queue = new LaneQueue(0, LaneQueue.DropPolicy.DROP_OLDEST);
+		for (int i = 0; i < LaneQueue.URGENT_CAPACITY; i++) {
+			assertTrue(queue.offer(newItem(), OpLevel.ERROR));
+		}
+		assertFalse(queue.offer(newItem(), OpLevel.FATAL));
+
+		LaneQueue.Lane urgent = queue.getUrgentLane();
+		assertEquals(LaneQueue.URGENT_CAPACITY, urgent.getDepth());
+		assertEquals(1, urgent.getDroppedCount());
+		assertEquals(LaneQueue.URGENT_CAPACITY, queue.size());
+		assertEquals(LaneQueue.URGENT_CAPACITY, queue.drainUrgent(item -> {
+		}));
+		assertEquals(0, urgent.getDepth());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void urgentItemSentWhenLaneFull() throws Exception {
+		String source = "test.lane.urgent";
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setBatchSize(1_000) //
+						.setLingerMillis(60_000) //
+						.setMetricsOnException(false));
+		manager.startup();
+		RecordingSink sink = RecordingSink.get(source);
+		try {
+			// urgent lane filled up as if sink were stuck
+			LaneQueue queue = manager.getQueue();
+			for (int i = 0; i < LaneQueue.URGENT_CAPACITY; i++) {
+				queue.offer(newItem(), OpLevel.ERROR);
+			}
+			sink.getItems().clear();
+			manager.tnt(newEvent(Level.ERROR, "urgent lane full"));
+
+			assertEquals(1, queue.getUrgentLane().getDroppedCount());
+			assertTrue(sink.getItems().stream().anyMatch(item -> item instanceof TrackingEvent
+					&& "urgent lane full".equals(((TrackingEvent) item).getMessage())));
+			assertEquals(0, queue.getUrgentLane().getDepth());
+		} finally {
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void groupedByOriginatingLogger() {
+		String source = "test.lane.groups";
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setBatchSize(1_000) //
+						.setLingerMillis(60_000) //
+						.setLoggerGroups("com.test.chatty=1,com.test.quiet=4") //
+						.setMetricsOnException(false));
+		manager.startup();
+		try {
+			// resource hashtag does not move item to another group
+			manager.tnt(Log4jLogEvent.newBuilder().setLoggerName("com.test.quiet.Service").setLevel(Level.INFO)
+					.setMessage(new SimpleMessage("quiet #rsn=com.test.chatty.Resource")).build());
+			// JVM metrics snapshot requested by the event (if already sampled) joins the event group
+			assertGroupDepths(manager.getQueue());
+
+			// items keep their group when moved to resized queue
+			manager.setQueue(100, LaneQueue.DropPolicy.DROP_OLDEST);
+			assertGroupDepths(manager.getQueue());
+		} finally {
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static void assertGroupDepths(LaneQueue queue) {
+		List<LaneQueue.Lane> lanes = queue.getGroupLanes();
+		assertEquals(0, lanes.get(LoggerGroups.DEFAULT_INDEX).getDepth());
+		assertEquals(0, lanes.get(1).getDepth());
+		assertTrue(lanes.get(2).getDepth() >= 1);
+	}
+
+	@Test
+	public void malformedGroupWeightDefaultsToOne() {
+		LoggerGroups groups = new LoggerGroups("org=x,com=-2,net=3");
+		assertEquals(4, groups.size());
+		assertEquals(1, groups.getWeight(groups.indexOf("org.Foo")));
+		assertEquals(1, groups.getWeight(groups.indexOf("com.Foo")));
+		assertEquals(3, groups.getWeight(groups.indexOf("net.Foo")));
+	}
+
+	@Test
+	public void errorLatencyUnderFlood() throws Exception {
+		String source = "test.lane.flood";
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setBatchSize(1_000) //
+						.setLingerMillis(60_000) //
+						.setQueueCapacity(5_000) //
+						.setMetricsOnException(false));
+		manager.startup();
+		Queue<Long> errorLatency = new ConcurrentLinkedQueue<>();
+		Queue<Long> infoLatency = new ConcurrentLinkedQueue<>();
+		RecordingSink.get(source).setObserver(item -> {
+			if (item instanceof TrackingEvent) {
+				String msg = ((TrackingEvent) item).getMessage();
+				long latency = System.nanoTime() - Long.parseLong(msg.substring(msg.indexOf("t=") + 2));
+				(((TrackingEvent) item).getSeverity() == OpLevel.ERROR ? errorLatency : infoLatency).add(latency);
+			}
+		});
+
+		ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			for (int p = 0; p < PRODUCERS; p++) {
+				producers.submit(() -> {
+					start.await();
+					for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+						// 1% of flood is ERROR
+						Level level = i % 100 == 99 ? Level.ERROR : Level.INFO;
+						manager.tnt(newEvent(level, "flood t=" + System.nanoTime()));
+					}
+					return null;
+				});
+			}
+			start.countDown();
+			producers.shutdown();
+			assertTrue(producers.awaitTermination(60, TimeUnit.SECONDS));
+			manager.flushBatch(true);
+
+			int errors = PRODUCERS * EVENTS_PER_PRODUCER / 100;
+			assertEquals(errors, errorLatency.size(), "all ERROR events delivered");
+			assertEquals(errors, manager.getQueue().getUrgentLane().getSentCount());
+			assertEquals(0, manager.getQueue().getUrgentLane().getDroppedCount());
+
+			long errorP99 = percentile(errorLatency, 0.99);
+			long infoP99 = percentile(infoLatency, 0.99);
+			// urgent lane is sent by logging thread, never waiting for linger
+			assertTrue(errorP99 < TimeUnit.MILLISECONDS.toNanos(100), "ERROR p99=" + errorP99 + "ns");
+			assertTrue(errorP99 < infoP99, "ERROR p99=" + errorP99 + "ns, INFO p99=" + infoP99 + "ns");
+		} finally {
+			producers.shutdownNow();
+			RecordingSink.get(source).setObserver(null);
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	static LogEvent newEvent(Level level, String msg) {
+		return Log4jLogEvent.newBuilder() //
+				.setLoggerName("com.test.Flood") //
+				.setLevel(level) //
+				.setMessage(new SimpleMessage(msg)) //
+				.build();
+	}
+
+	private static long percentile(Queue<Long> values, double percentile) {
+		long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+	}
+}
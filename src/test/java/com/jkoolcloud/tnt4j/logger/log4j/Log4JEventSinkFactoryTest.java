@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.*;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.TrackingLogger;
+import com.jkoolcloud.tnt4j.config.DefaultConfigFactory;
+import com.jkoolcloud.tnt4j.config.TrackerConfig;
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.source.SourceType;
+
+/**
+ * Tests sink sharing and release by {@link Log4JEventSinkFactory} under factory and sink churn, and shared sink use by
+ * several trackers.
+ */
+public class Log4JEventSinkFactoryTest {
+
+	static Log4JEventSinkFactory newFactory(boolean structured) throws Exception {
+		Map<String, Object> settings = new HashMap<>();
+		settings.put("Structured", String.valueOf(structured));
+		settings.put("RouteBy", "NONE");
+		Log4JEventSinkFactory factory = new Log4JEventSinkFactory();
+		factory.setConfiguration(settings);
+		return factory;
+	}
+
+	@Test
+	public void sinkSharedAcrossFactoryInstances() throws Exception {
+		EventSink first = newFactory(false).getEventSink("test.sink.shared");
+		int count = Log4JEventSinkFactory.getSinkCount();
+		for (int i = 0; i < 100; i++) {
+			assertSame(first, newFactory(false).getEventSink("test.sink.shared"));
+		}
+		assertEquals(count, Log4JEventSinkFactory.getSinkCount());
+
+		EventSink structured = newFactory(true).getEventSink("test.sink.shared");
+		assertNotSame(first, structured);
+		assertNotSame(((Log4JEventSink) first).getEventFormatter(),
+				((Log4JEventSink) structured).getEventFormatter());
+	}
+
+	static TrackingLogger newTracker(String source, Log4JEventSinkFactory factory) throws IOException {
+		TrackerConfig config = DefaultConfigFactory.getInstance().getConfig(source, SourceType.APPL).build();
+		config.setEventSinkFactory(factory);
+		TrackingLogger tracker = TrackingLogger.getInstance(config);
+		tracker.open();
+		return tracker;
+	}
+
+	@Test
+	public void sharedSinkUsableAfterOneTrackerCloses() throws Exception {
+		String source = "test.sink.trackers";
+		Configurator.setLevel(source, Level.ALL);
+		CollectingAppender appender = CollectingAppender.attach(source);
+		try {
+			TrackingLogger first = newTracker(source, newFactory(false));
+			TrackingLogger second = newTracker(source, newFactory(false));
+			EventSink sink = second.getEventSink();
+			assertSame(first.getEventSink(), sink);
+
+			first.close();
+			assertTrue(sink.isOpen());
+			second.log(OpLevel.INFO, "logged after first tracker closed");
+			assertTrue(appender.contains("logged after first tracker closed"));
+			second.close();
+		} finally {
+			appender.detach();
+		}
+	}
+
+	@Test
+	public void sinkCountBoundedUnderChurn() throws Exception {
+		int baseline = Log4JEventSinkFactory.getSinkCount();
+		List<EventSink> inUse = new ArrayList<>();
+		for (int i = 0; i < 1_000; i++) {
+			EventSink sink = newFactory(i % 2 == 0).getEventSink("test.sink.churn" + i);
+			if (i % 100 == 0) {
+				inUse.add(sink);
+			}
+		}
+
+		int count = Integer.MAX_VALUE;
+		for (int i = 0; i < 50 && count > baseline + inUse.size(); i++) {
+			System.gc();
+			Thread.sleep(20);
+			count = Log4JEventSinkFactory.getSinkCount();
+		}
+		// baseline may include unused sinks of other tests, collected as well
+		assertTrue(count <= baseline + inUse.size(), "registered sinks: " + count);
+		assertTrue(count >= inUse.size(), "registered sinks: " + count);
+		for (EventSink sink : inUse) {
+			assertSame(sink, newFactory(((Log4JEventSink) sink).isStructured()).getEventSink(sink.getName()));
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Properties;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.filter.AbstractFilter;
+import org.apache.logging.log4j.message.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.format.DefaultFormatter;
+import com.jkoolcloud.tnt4j.source.DefaultSourceFactory;
+import com.jkoolcloud.tnt4j.source.Source;
+
+/**
+ * Tests routing of {@link Log4JEventSink} events to per source log4j loggers: routed logger levels, level changes and
+ * context-wide filters evaluated per event.
+ */
+public class Log4JEventSinkTest {
+	private static final String SINK = "test.route";
+	private static final String LOUD = "com.test.loud";
+	private static final String QUIET = "com.test.quiet";
+
+	private Log4JEventSink sink;
+	private CollectingAppender appender;
+
+	/**
+	 * Context-wide filter denying events of single logger while enabled.
+	 */
+	static final class LoggerDenyFilter extends AbstractFilter {
+		private final String loggerName;
+		private volatile boolean deny;
+
+		LoggerDenyFilter(String loggerName) {
+			this.loggerName = loggerName;
+		}
+
+		private Result filter(String name) {
+			return deny && loggerName.equals(name) ? Result.DENY : Result.NEUTRAL;
+		}
+
+		@Override
+		public Result filter(LogEvent event) {
+			return filter(event.getLoggerName());
+		}
+
+		@Override
+		public Result filter(Logger logger, Level level, Marker marker, Message msg, Throwable t) {
+			return filter(logger.getName());
+		}
+
+		@Override
+		public Result filter(Logger logger, Level level, Marker marker, Object msg, Throwable t) {
+			return filter(logger.getName());
+		}
+
+		@Override
+		public Result filter(Logger logger, Level level, Marker marker, String msg, Object... params) {
+			return filter(logger.getName());
+		}
+	}
+
+	static Source newSource(String name) {
+		return DefaultSourceFactory.getInstance().newSource(name);
+	}
+
+	@BeforeEach
+	public void setUp() {
+		Configurator.setLevel(SINK, Level.ALL);
+		Configurator.setLevel(SINK + "." + QUIET, Level.WARN);
+		appender = CollectingAppender.attach(SINK);
+		sink = new Log4JEventSink(SINK, new Properties(), new DefaultFormatter());
+		sink.setRouting(Log4JEventSink.RouteBy.SOURCE, 10);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		appender.detach();
+	}
+
+	@Test
+	public void routedToSourceLoggers() {
+		sink.log(newSource(LOUD), OpLevel.INFO, "loud info");
+		sink.log(newSource(QUIET), OpLevel.INFO, "quiet info");
+		sink.log(newSource(QUIET), OpLevel.WARNING, "quiet warning");
+
+		assertEquals(2, appender.getEvents().size());
+		assertEquals(SINK + "." + LOUD, appender.getEvents().get(0).getLoggerName());
+		assertEquals(SINK + "." + QUIET, appender.getEvents().get(1).getLoggerName());
+		assertTrue(appender.contains("quiet warning"));
+		assertFalse(appender.contains("quiet info"));
+	}
+
+	@Test
+	public void routedLoggerLevelChangeApplied() {
+		sink.log(newSource(QUIET), OpLevel.INFO, "before level change");
+		Configurator.setLevel(SINK + "." + QUIET, Level.DEBUG);
+		sink.log(newSource(QUIET), OpLevel.INFO, "after level change");
+
+		assertFalse(appender.contains("before level change"));
+		assertTrue(appender.contains("after level change"));
+	}
+
+	@Test
+	public void transientFilterDenyDoesNotMuteRoute() {
+		Configuration config = LoggerContext.getContext(false).getConfiguration();
+		LoggerDenyFilter filter = new LoggerDenyFilter(SINK + "." + LOUD);
+		config.addFilter(filter);
+		try {
+			filter.deny = true;
+			sink.log(newSource(LOUD), OpLevel.INFO, "denied by filter");
+			filter.deny = false;
+			sink.log(newSource(LOUD), OpLevel.INFO, "passed by filter");
+
+			assertFalse(appender.contains("denied by filter"));
+			assertTrue(appender.contains("passed by filter"));
+		} finally {
+			config.removeFilter(filter);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.core.Property;
+import com.jkoolcloud.tnt4j.logger.AppenderTools;
+
+/**
+ * Compares {@link PropertyConverter} with {@link AppenderTools#toProperty(String, String)} on numeric heavy hashtag
+ * attributes: converted properties must be same.
+ */
+public class PropertyConverterTest {
+	/**
+	 * Attributes of typical metrics logging statement: mostly numeric values, some annotated, some not matching
+	 * annotated type.
+	 */
+	private static final String[][] ATTRS = { //
+			{ "bytes", "1048576" }, //
+			{ "elapsed", "-125" }, //
+			{ "%l/count", "9223372036854775807" }, //
+			{ "%i/retries", "3" }, //
+			{ "%d/ratio", "0.75" }, //
+			{ "%f:age-sec/cpu", "12.5e-1" }, //
+			{ "%n/load", "1.25" }, //
+			{ "%b/hit", "true" }, //
+			{ "status", "OK" }, //
+			{ "%d/ratio", "n/a" }, //
+			{ "%i/size", "12345678901" }, //
+			{ "%l/count", "many" }, //
+	};
+
+	@Test
+	public void sameResultsAsAppenderTools() {
+		PropertyConverter converter = new PropertyConverter(null);
+		for (String[] attr : ATTRS) {
+			Property expected = AppenderTools.toProperty(attr[0], attr[1]);
+			Property actual = converter.toProperty(attr[0], attr[1]);
+			assertEquals(expected.getKey(), actual.getKey(), attr[0]);
+			assertEquals(expected.getValue(), actual.getValue(), attr[0] + "=" + attr[1]);
+			assertEquals(expected.getValueType(), actual.getValueType(), attr[0]);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.jkoolcloud.tnt4j.core.Snapshot;
+import com.jkoolcloud.tnt4j.core.Trackable;
+import com.jkoolcloud.tnt4j.sink.impl.NullEventSink;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Test sink recording all logged tracking items in memory. Sink can be slowed down by per item and per flush delays,
+ * made to reject items and its close can be blocked, to simulate slow, failing or stuck collector. Optional observer sees every item as it arrives,
+ * e.g. to measure delivery latency, while keeping items can be turned off for long running tests. Sinks are registered
+ * by name, so tests can find sink used by tracker of given source.
+ *
+ * @version $Revision: 1 $
+ */
+public class RecordingSink extends NullEventSink {
+	private static final Map<String, RecordingSink> SINKS = new ConcurrentHashMap<>();
+
+	private final List<Trackable> items = new CopyOnWriteArrayList<>();
+	private volatile long delayNanos;
+	private volatile long flushDelayNanos;
+	private volatile boolean keepItems = true;
+	private volatile CountDownLatch closeGate;
+	private volatile Consumer<Trackable> observer;
+	private final AtomicInteger failures = new AtomicInteger();
+
+	private RecordingSink(String name) {
+		super(name);
+	}
+
+	/**
+	 * Returns sink registered under given name, creating it if needed.
+	 *
+	 * @param name
+	 *            sink name (tracker source name)
+	 * @return recording sink
+	 */
+	public static RecordingSink get(String name) {
+		return SINKS.computeIfAbsent(name, RecordingSink::new);
+	}
+
+	/**
+	 * Returns items logged to this sink.
+	 *
+	 * @return logged items
+	 */
+	public List<Trackable> getItems() {
+		return items;
+	}
+
+	/**
+	 * Sets delay of every logged item.
+	 *
+	 * @param delayMillis
+	 *            delay in milliseconds
+	 */
+	public void setDelayMillis(long delayMillis) {
+		this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+	}
+
+	/**
+	 * Sets delay of every logged item, emulating collector per item processing cost.
+	 *
+	 * @param delayMicros
+	 *            delay in microseconds
+	 */
+	public void setDelayMicros(long delayMicros) {
+		this.delayNanos = TimeUnit.MICROSECONDS.toNanos(delayMicros);
+	}
+
+	/**
+	 * Sets delay of every sink flush, emulating collector round trip.
+	 *
+	 * @param flushDelayMicros
+	 *            delay in microseconds
+	 */
+	public void setFlushDelayMicros(long flushDelayMicros) {
+		this.flushDelayNanos = TimeUnit.MICROSECONDS.toNanos(flushDelayMicros);
+	}
+
+	/**
+	 * Sets whether logged items are kept, so they can be returned by {@link #getItems()}.
+	 *
+	 * @param keepItems
+	 *            {@code true} to keep logged items, {@code false} - to pass them only to observer
+	 */
+	public void setKeepItems(boolean keepItems) {
+		this.keepItems = keepItems;
+	}
+
+	/**
+	 * Makes sink close block until given latch is released.
+	 *
+	 * @param gate
+	 *            latch to wait for on close, {@code null} - close does not block
+	 */
+	public void setCloseGate(CountDownLatch gate) {
+		this.closeGate = gate;
+	}
+
+	/**
+	 * Sets observer called with every logged item as it arrives.
+	 *
+	 * @param observer
+	 *            logged items observer, {@code null} - none
+	 */
+	public void setObserver(Consumer<Trackable> observer) {
+		this.observer = observer;
+	}
+
+	/**
+	 * Makes given number of next logged items fail, as if rejected by collector. Failed items are not recorded.
+	 *
+	 * @param count
+	 *            number of items to fail
+	 */
+	public void setFailures(int count) {
+		failures.set(count);
+	}
+
+	@Override
+	protected void _log(TrackingEvent event) {
+		record(event);
+	}
+
+	@Override
+	protected void _log(TrackingActivity activity) {
+		record(activity);
+	}
+
+	@Override
+	protected void _log(Snapshot snapshot) {
+		record(snapshot);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		super.flush();
+		delay(flushDelayNanos);
+	}
+
+	@Override
+	protected void _close() {
+		CountDownLatch gate = closeGate;
+		if (gate != null) {
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void record(Trackable item) {
+		if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+			throw new IllegalStateException("Item rejected by recording sink " + getName());
+		}
+		delay(delayNanos);
+		Consumer<Trackable> obs = observer;
+		if (obs != null) {
+			obs.accept(item);
+		}
+		if (keepItems) {
+			items.add(item);
+		}
+	}
+
+	private static void delay(long nanos) {
+		if (nanos >= TimeUnit.MILLISECONDS.toNanos(1)) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else if (nanos > 0) {
+			// sub-millisecond delays are spun, sleeping is not that precise
+			long end = System.nanoTime() + nanos;
+			while (System.nanoTime() < end) {
+				Thread.onSpinWait();
+			}
+		}
+	}
+}
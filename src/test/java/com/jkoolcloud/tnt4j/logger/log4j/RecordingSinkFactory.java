@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import java.util.Properties;
+
+import com.jkoolcloud.tnt4j.format.EventFormatter;
+import com.jkoolcloud.tnt4j.sink.EventSink;
+import com.jkoolcloud.tnt4j.sink.impl.NullEventSinkFactory;
+
+/**
+ * Test sink factory creating {@link RecordingSink} instances.
+ *
+ * @version $Revision: 1 $
+ */
+public class RecordingSinkFactory extends NullEventSinkFactory {
+	@Override
+	public EventSink getEventSink(String name) {
+		return RecordingSink.get(name);
+	}
+
+	@Override
+	public EventSink getEventSink(String name, Properties props) {
+		return RecordingSink.get(name);
+	}
+
+	@Override
+	public EventSink getEventSink(String name, Properties props, EventFormatter frmt) {
+		return RecordingSink.get(name);
+	}
+}
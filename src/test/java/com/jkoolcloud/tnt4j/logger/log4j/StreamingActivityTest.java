@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.core.*;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+
+/**
+ * Compares heap retained by open activity and largest burst sent to sink with and without streaming activities. Child
+ * events carry request correlators, which buffered activity collects until it is sent.
+ */
+public class StreamingActivityTest {
+	private static final int EVENTS = 5_000;
+
+	static TNT4JManager newManager(String source, boolean streaming) {
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setBatchSize(0) //
+						.setStreamActivities(streaming) //
+						.setMaxActivitySize(EVENTS * 2) //
+						.setMetricsOnException(false));
+		manager.startup();
+		return manager;
+	}
+
+	static LogEvent newEvent(Level level, Message msg) {
+		return Log4jLogEvent.newBuilder() //
+				.setLoggerName("com.test.Streaming") //
+				.setLevel(level) //
+				.setMessage(msg) //
+				.build();
+	}
+
+	static long usedHeap() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	static int burstSize(Trackable item) {
+		return item instanceof TrackingActivity ? ((TrackingActivity) item).getIdCount() + 1 : 1;
+	}
+
+	static TrackingActivity lastActivity(RecordingSink sink) {
+		TrackingActivity activity = null;
+		for (Trackable item : sink.getItems()) {
+			if (item instanceof TrackingActivity) {
+				activity = (TrackingActivity) item;
+			}
+		}
+		return activity;
+	}
+
+	/**
+	 * Logs activity of {@value #EVENTS} events, one of them failed, and returns heap retained while activity is open.
+	 * Child events already sent are dropped by recording sink before measuring, so only activity retention counts.
+	 */
+	static long runActivity(TNT4JManager manager, RecordingSink sink, boolean end) {
+		manager.tnt(newEvent(Level.INFO, new SimpleMessage("#beg=request")));
+		sink.getItems().clear();
+		long before = usedHeap();
+		for (int i = 0; i < EVENTS; i++) {
+			if (i == EVENTS / 2) {
+				manager.tnt(newEvent(Level.WARN,
+						new ParameterizedMessage("step {} failed", new Object[] { i }, new IllegalStateException())));
+			} else {
+				manager.tnt(newEvent(Level.INFO, new SimpleMessage("step " + i + " #cid=req-" + i)));
+			}
+		}
+		sink.getItems().clear();
+		long retained = usedHeap() - before;
+		if (end) {
+			manager.tnt(newEvent(Level.INFO, new SimpleMessage("#end=request")));
+		}
+		return retained;
+	}
+
+	@Test
+	public void streamingReducesRetentionAndBursts() {
+		TNT4JManager buffered = newManager("test.activity.buffered", false);
+		TNT4JManager streaming = newManager("test.activity.streaming", true);
+		try {
+			RecordingSink bufferedSink = RecordingSink.get("test.activity.buffered");
+			RecordingSink streamingSink = RecordingSink.get("test.activity.streaming");
+			long bufferedRetained = runActivity(buffered, bufferedSink, true);
+			long streamingRetained = runActivity(streaming, streamingSink, true);
+			int bufferedBurst = bufferedSink.getItems().stream().mapToInt(StreamingActivityTest::burstSize).max()
+					.orElse(0);
+			int streamingBurst = streamingSink.getItems().stream().mapToInt(StreamingActivityTest::burstSize).max()
+					.orElse(0);
+			assertEquals(EVENTS, bufferedBurst);
+			assertEquals(1, streamingBurst);
+			assertTrue(streamingRetained < bufferedRetained / 2,
+					"retained streaming=" + streamingRetained + ", buffered=" + bufferedRetained);
+
+			TrackingActivity activity = lastActivity(streamingSink);
+			assertNotNull(activity);
+			assertEquals(0, activity.getIdCount());
+			assertTrue(activity.getSnapshots().stream()
+					.anyMatch(snapshot -> ActivityStats.SNAPSHOT_NAME.equals(snapshot.getName())));
+			assertEquals(OpLevel.WARNING, activity.getSeverity());
+			assertEquals(OpCompCode.ERROR, activity.getCompCode());
+			assertEquals(ActivityStatus.EXCEPTION, activity.getStatus());
+			assertNotNull(activity.getThrowable());
+		} finally {
+			buffered.stop(1_000, TimeUnit.MILLISECONDS);
+			streaming.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void statsAttachedToActivityStoppedOnRelease() {
+		TNT4JManager manager = newManager("test.activity.released", true);
+		RecordingSink sink = RecordingSink.get("test.activity.released");
+		runActivity(manager, sink, false);
+		manager.stop(1_000, TimeUnit.MILLISECONDS);
+
+		TrackingActivity activity = lastActivity(sink);
+		assertNotNull(activity);
+		assertTrue(activity.getSnapshots().stream()
+				.anyMatch(snapshot -> ActivityStats.SNAPSHOT_NAME.equals(snapshot.getName())));
+		assertEquals(OpCompCode.ERROR, activity.getCompCode());
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.source.SourceType;
+
+/**
+ * Tests {@link TNT4JBackpressureFilter} hysteresis: events below filter level are rejected once appender queue depth
+ * reaches high threshold, and passed again only when queue depth drops to low threshold.
+ */
+public class TNT4JBackpressureFilterTest {
+
+	static LogEvent newEvent(Level level) {
+		return Log4jLogEvent.newBuilder() //
+				.setLoggerName("com.test.Backpressure") //
+				.setLevel(level) //
+				.setMessage(new SimpleMessage("backpressure")) //
+				.build();
+	}
+
+	@Test
+	public void queueDepthHysteresis() {
+		String source = "test.backpressure.depth";
+		DefaultConfiguration config = new DefaultConfiguration();
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(config, source, SourceType.APPL) //
+						.setBatchSize(1_000) //
+						.setLingerMillis(60_000) //
+						// no JVM metrics snapshot gets queued along with events
+						.setMetricsFrequency(Long.MAX_VALUE / 1_000) //
+						.setMetricsOnException(false));
+		manager.startup();
+		config.addAppender(new TNT4JAppender("tnt4j", null, null, true, manager, null));
+		TNT4JBackpressureFilter filter = TNT4JBackpressureFilter.newBuilder() //
+				.setConfiguration(config) //
+				.setAppender("tnt4j") //
+				.setLevel(Level.WARN) //
+				.setHighQueueDepth(100) //
+				.setLowQueueDepth(20) //
+				.build();
+		try {
+			for (int i = 0; i < 99; i++) {
+				manager.tnt(newEvent(Level.INFO));
+			}
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent(Level.INFO)));
+
+			manager.tnt(newEvent(Level.INFO));
+			assertEquals(Filter.Result.DENY, filter.filter(newEvent(Level.INFO)));
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent(Level.WARN)));
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent(Level.ERROR)));
+
+			// below high, but above low threshold: still saturated
+			manager.flushBatch(false, 50);
+			assertEquals(50, manager.getQueueDepth());
+			assertTrue(filter.isSaturated());
+			assertEquals(Filter.Result.DENY, filter.filter(newEvent(Level.DEBUG)));
+
+			manager.flushBatch(false, 30);
+			assertEquals(20, manager.getQueueDepth());
+			assertFalse(filter.isSaturated());
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent(Level.INFO)));
+		} finally {
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void unknownAppenderNeverSaturated() {
+		TNT4JBackpressureFilter filter = TNT4JBackpressureFilter.newBuilder() //
+				.setConfiguration(new DefaultConfiguration()) //
+				.setAppender("missing") //
+				.setHighQueueDepth(1) //
+				.build();
+		assertFalse(filter.isSaturated());
+		assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent(Level.TRACE)));
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.config.ConfigFactoryStoreImpl;
+import com.jkoolcloud.tnt4j.config.TrackerConfig;
+import com.jkoolcloud.tnt4j.config.TrackerConfigStore;
+import com.jkoolcloud.tnt4j.source.SourceType;
+
+/**
+ * Tests parsed configuration cache and measures cold start of a dozen tracker configurations with and without it.
+ */
+public class TNT4JConfigCacheTest {
+	private static final int SOURCES = 12;
+
+	private Path cfgFile;
+	private String savedCfg;
+
+	/**
+	 * Configuration factory counting configuration file parses.
+	 */
+	static class CountingConfigFactory extends ConfigFactoryStoreImpl {
+		final AtomicInteger parses = new AtomicInteger();
+
+		@Override
+		public TrackerConfig getConfig(String source, SourceType type) {
+			parses.incrementAndGet();
+			return super.getConfig(source, type);
+		}
+	}
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		// default stanza goes first, since it overrides matching stanzas defined before it
+		StringBuilder cfg = new StringBuilder(stanza("*"));
+		for (int i = 0; i < SOURCES; i++) {
+			cfg.append(stanza("test.cache.source" + i));
+		}
+		cfgFile = Files.createTempFile("tnt4j-cache", ".properties");
+		Files.write(cfgFile, cfg.toString().getBytes(StandardCharsets.UTF_8));
+
+		savedCfg = System.getProperty(TrackerConfigStore.TNT4J_PROPERTIES_KEY);
+		System.setProperty(TrackerConfigStore.TNT4J_PROPERTIES_KEY, cfgFile.toString());
+		TNT4JConfigCache.clear();
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		if (savedCfg == null) {
+			System.clearProperty(TrackerConfigStore.TNT4J_PROPERTIES_KEY);
+		} else {
+			System.setProperty(TrackerConfigStore.TNT4J_PROPERTIES_KEY, savedCfg);
+		}
+		TNT4JConfigCache.clear();
+		Files.deleteIfExists(cfgFile);
+	}
+
+	private static String stanza(String source) {
+		return "{\n" //
+				+ "\tsource: " + source + "\n" //
+				+ "\tsource.factory: com.jkoolcloud.tnt4j.source.SourceFactoryImpl\n" //
+				+ "\tsource.factory.RootFQN: RUNTIME=?#SERVER=?#NETADDR=?\n" //
+				+ "\ttracker.factory: com.jkoolcloud.tnt4j.tracker.DefaultTrackerFactory\n" //
+				+ "\tdump.sink.factory: com.jkoolcloud.tnt4j.dump.DefaultDumpSinkFactory\n" //
+				+ "\tevent.sink.factory: com.jkoolcloud.tnt4j.logger.log4j.RecordingSinkFactory\n" //
+				+ "\tevent.formatter: com.jkoolcloud.tnt4j.format.SimpleFormatter\n" //
+				+ "\ttracking.selector: com.jkoolcloud.tnt4j.selector.DefaultTrackingSelector\n" //
+				+ "}\n";
+	}
+
+	@Test
+	public void parsedOnceByConcurrentlyStartingSources() throws Exception {
+		CountingConfigFactory factory = new CountingConfigFactory();
+		ExecutorService pool = Executors.newFixedThreadPool(SOURCES);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<TrackerConfig>> configs = new ArrayList<>();
+			for (int i = 0; i < SOURCES; i++) {
+				String source = "test.cache.source" + i;
+				configs.add(pool.submit(() -> {
+					start.await();
+					return TNT4JConfigCache.getConfig(factory, source, SourceType.APPL).build();
+				}));
+			}
+			start.countDown();
+			for (int i = 0; i < SOURCES; i++) {
+				TrackerConfig config = configs.get(i).get(10, TimeUnit.SECONDS);
+				assertEquals("test.cache.source" + i, config.getProperty("source"));
+				assertTrue(config.getEventSinkFactory() instanceof RecordingSinkFactory);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(1, factory.parses.get());
+	}
+
+	@Test
+	public void invalidatedWhenFileModified() throws Exception {
+		CountingConfigFactory factory = new CountingConfigFactory();
+		TNT4JConfigCache.getConfig(factory, "test.cache.source0", SourceType.APPL);
+		TNT4JConfigCache.getConfig(factory, "test.cache.source1", SourceType.APPL);
+		assertEquals(1, factory.parses.get());
+
+		File file = cfgFile.toFile();
+		assertTrue(file.setLastModified(file.lastModified() + 5_000));
+		TNT4JConfigCache.getConfig(factory, "test.cache.source2", SourceType.APPL);
+		assertEquals(2, factory.parses.get());
+	}
+
+	@Test
+	public void cachedColdStartFaster() {
+		int rounds = 7;
+		long[] uncached = new long[rounds];
+		long[] cached = new long[rounds];
+		for (int r = 0; r < rounds; r++) {
+			CountingConfigFactory factory = new CountingConfigFactory();
+			long start = System.nanoTime();
+			for (int i = 0; i < SOURCES; i++) {
+				factory.getConfig("test.cache.source" + i, SourceType.APPL).build();
+			}
+			uncached[r] = System.nanoTime() - start;
+			assertEquals(SOURCES, factory.parses.get());
+
+			factory = new CountingConfigFactory();
+			TNT4JConfigCache.clear();
+			start = System.nanoTime();
+			for (int i = 0; i < SOURCES; i++) {
+				TNT4JConfigCache.getConfig(factory, "test.cache.source" + i, SourceType.APPL).build();
+			}
+			cached[r] = System.nanoTime() - start;
+			assertEquals(1, factory.parses.get());
+		}
+		assertTrue(median(cached) < median(uncached),
+				"cached=" + median(cached) + "ns, uncached=" + median(uncached) + "ns");
+	}
+
+	private static long median(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.core.OpLevel;
+import com.jkoolcloud.tnt4j.core.Trackable;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Tests deadline bounded release of {@link TNT4JManager} using deliberately slow and stuck sinks.
+ */
+public class TNT4JManagerReleaseTest {
+
+	static TNT4JManager newManager(String source, int batchSize) {
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setBatchSize(batchSize) //
+						.setLingerMillis(60_000) //
+						.setMetricsOnException(false));
+		manager.startup();
+		return manager;
+	}
+
+	static LogEvent newEvent(Level level, String msg) {
+		return Log4jLogEvent.newBuilder() //
+				.setLoggerName("com.test.Release") //
+				.setLevel(level) //
+				.setMessage(new SimpleMessage(msg)) //
+				.build();
+	}
+
+	@Test
+	public void releaseWithSlowSinkIsBoundedByTimeout() {
+		String source = "test.release.slow";
+		TNT4JManager manager = newManager(source, 1_000);
+		RecordingSink sink = RecordingSink.get(source);
+		for (int i = 0; i < 100; i++) {
+			manager.tnt(newEvent(Level.INFO, "info " + i));
+		}
+		for (int i = 0; i < 5; i++) {
+			manager.tnt(newEvent(Level.WARN, "warning " + i));
+		}
+		int sentBeforeRelease = sink.getItems().size();
+		sink.setDelayMillis(50);
+
+		long start = System.nanoTime();
+		manager.stop(500, TimeUnit.MILLISECONDS);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue(elapsedMillis < 2_000, "release took " + elapsedMillis + "ms");
+		int flushed = manager.getLastReleaseFlushed();
+		int abandoned = manager.getLastReleaseAbandoned();
+		assertTrue(flushed > 0, "nothing flushed");
+		assertTrue(abandoned > 0, "nothing abandoned");
+		assertEquals(sentBeforeRelease + flushed, sink.getItems().size());
+
+		// higher severity items are flushed first
+		List<Trackable> released = sink.getItems().subList(sentBeforeRelease, sink.getItems().size());
+		for (int i = 0; i < Math.min(5, released.size()); i++) {
+			assertEquals(OpLevel.WARNING, ((TrackingEvent) released.get(i)).getSeverity());
+		}
+	}
+
+	@Test
+	public void releaseWaitsForLingerFlusher() throws Exception {
+		String source = "test.release.linger";
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setBatchSize(1_000) //
+						.setLingerMillis(10) //
+						.setMetricsOnException(false));
+		manager.startup();
+		RecordingSink sink = RecordingSink.get(source);
+		sink.setDelayMillis(20);
+		CountDownLatch sending = new CountDownLatch(1);
+		sink.setObserver(item -> sending.countDown());
+		for (int i = 0; i < 10; i++) {
+			manager.tnt(newEvent(Level.INFO, "info " + i));
+		}
+		// linger flusher is in the middle of sending the batch
+		assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+		assertTrue(manager.stop(5_000, TimeUnit.MILLISECONDS));
+		int sentOnRelease = sink.getItems().size();
+		Thread.sleep(100);
+		assertEquals(sentOnRelease, sink.getItems().size(), "items sent after release");
+		assertEquals(10, sink.getItems().stream().filter(TrackingEvent.class::isInstance).count());
+		assertEquals(0, manager.getLastReleaseAbandoned());
+	}
+
+	@Test
+	public void releaseWithStuckSinkDoesNotHang() {
+		String source = "test.release.stuck";
+		TNT4JManager manager = newManager(source, 0);
+		RecordingSink sink = RecordingSink.get(source);
+		CountDownLatch gate = new CountDownLatch(1);
+		sink.setCloseGate(gate);
+		try {
+			manager.tnt(newEvent(Level.INFO, "info"));
+
+			long start = System.nanoTime();
+			assertFalse(manager.stop(300, TimeUnit.MILLISECONDS));
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			assertTrue(elapsedMillis < 2_000, "release took " + elapsedMillis + "ms");
+			assertEquals(1, sink.getItems().stream().filter(TrackingEvent.class::isInstance).count());
+		} finally {
+			gate.countDown();
+		}
+	}
+}
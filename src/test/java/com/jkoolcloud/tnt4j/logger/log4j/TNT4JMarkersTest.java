@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.apache.logging.log4j.util.SortedArrayStringMap;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.core.Trackable;
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingActivity;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Tests activities driven by {@link TNT4JMarkers}: activity name resolution and no message formatting of marked events.
+ */
+public class TNT4JMarkersTest {
+
+	/**
+	 * Message failing test if {@link TNT4JManager} formats it.
+	 */
+	static final class UnformattableMessage extends SimpleMessage {
+		private static final long serialVersionUID = 1L;
+
+		UnformattableMessage() {
+			super("#beg=ignored #end=ignored");
+		}
+
+		@Override
+		public String getFormattedMessage() {
+			throw new AssertionError("marked event message must not be formatted");
+		}
+	}
+
+	static LogEvent newEvent(Marker marker, Message msg, String activityId) {
+		SortedArrayStringMap context = new SortedArrayStringMap();
+		if (activityId != null) {
+			context.putValue(TNT4JMarkers.ACTIVITY_ID_KEY, activityId);
+		}
+		return Log4jLogEvent.newBuilder() //
+				.setLoggerName("com.test.Marked") //
+				.setLevel(Level.INFO) //
+				.setMarker(marker) //
+				.setContextData(context) //
+				.setMessage(msg) //
+				.build();
+	}
+
+	static TNT4JManager newManager(String source) {
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setBatchSize(0) //
+						.setMetricsOnException(false));
+		manager.startup();
+		return manager;
+	}
+
+	@Test
+	public void markersBeginAndEndActivity() {
+		String source = "test.markers.activity";
+		TNT4JManager manager = newManager(source);
+		RecordingSink sink = RecordingSink.get(source);
+		try {
+			assertEquals(0, manager.tnt(newEvent(TNT4JMarkers.ACTIVITY_BEGIN, new UnformattableMessage(),
+					"OrderProcessing")));
+			manager.tnt(newEvent(null, new SimpleMessage("saving order #opn=save"), null));
+			assertEquals(0,
+					manager.tnt(newEvent(TNT4JMarkers.ACTIVITY_END, new UnformattableMessage(), "OrderProcessing")));
+
+			TrackingActivity activity = null;
+			TrackingEvent event = null;
+			for (Trackable item : sink.getItems()) {
+				if (item instanceof TrackingActivity) {
+					activity = (TrackingActivity) item;
+				} else if (item instanceof TrackingEvent) {
+					event = (TrackingEvent) item;
+				}
+			}
+			assertNotNull(activity, "activity ended by marker is sent");
+			assertEquals("OrderProcessing", activity.getName());
+			assertTrue(activity.isStopped());
+			assertNotNull(event);
+			assertEquals("save", event.getOperation().getName());
+			assertEquals(activity.getTrackingId(), event.getParentId());
+		} finally {
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Test
+	public void activityNamedByLoggerWithoutContext() {
+		String source = "test.markers.logger";
+		TNT4JManager manager = newManager(source);
+		RecordingSink sink = RecordingSink.get(source);
+		try {
+			manager.tnt(newEvent(TNT4JMarkers.ACTIVITY_BEGIN, new UnformattableMessage(), null));
+			manager.tnt(newEvent(TNT4JMarkers.ACTIVITY_END, new UnformattableMessage(), null));
+
+			TrackingActivity activity = (TrackingActivity) sink.getItems().stream()
+					.filter(TrackingActivity.class::isInstance).findFirst().orElse(null);
+			assertNotNull(activity);
+			assertEquals("com.test.Marked", activity.getName());
+		} finally {
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests {@link TNT4JSelectorFilter} evaluation of selector tokens: level limits, prefix matching, value patterns and
+ * tokens reload on repository change.
+ */
+public class TNT4JSelectorFilterTest {
+	private static final String TOKENS = "com.test=WARNING\n" //
+			+ "com.test.verbose=DEBUG\n" //
+			+ "com.test.audit=INFO:AUDIT_.*\n";
+
+	@TempDir
+	Path dir;
+
+	static LogEvent newEvent(String loggerName, Level level, String marker) {
+		return Log4jLogEvent.newBuilder() //
+				.setLoggerName(loggerName) //
+				.setLevel(level) //
+				.setMarker(marker == null ? null : MarkerManager.getMarker(marker)) //
+				.setMessage(new SimpleMessage("selector")) //
+				.build();
+	}
+
+	TNT4JSelectorFilter newFilter(CompiledTokenRepository repository, boolean prefixMatch) {
+		TNT4JSelectorFilter filter = new TNT4JSelectorFilter(repository, TNT4JSelectorFilter.KeyBy.LOGGER,
+				prefixMatch, Filter.Result.NEUTRAL, Filter.Result.DENY);
+		filter.start();
+		return filter;
+	}
+
+	CompiledTokenRepository newRepository() throws Exception {
+		Path tokens = dir.resolve("tnt4j-tokens.properties");
+		Files.write(tokens, TOKENS.getBytes(StandardCharsets.UTF_8));
+		return new CompiledTokenRepository(tokens.toString(), false);
+	}
+
+	@Test
+	public void tokensGateLevelsAndValues() throws Exception {
+		TNT4JSelectorFilter filter = newFilter(newRepository(), true);
+		try {
+			assertEquals(Filter.Result.DENY, filter.filter(newEvent("com.test", Level.INFO, null)));
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent("com.test", Level.WARN, null)));
+			// nearest defined prefix applies
+			assertEquals(Filter.Result.DENY, filter.filter(newEvent("com.test.service.Api", Level.INFO, null)));
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent("com.test.verbose.Api", Level.DEBUG, null)));
+			assertEquals(Filter.Result.DENY, filter.filter(newEvent("com.test.verbose.Api", Level.TRACE, null)));
+			// undefined keys are not gated
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent("org.other", Level.TRACE, null)));
+			// marker name is matched against token value pattern
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent("com.test.audit", Level.INFO, "AUDIT_LOGIN")));
+			assertEquals(Filter.Result.DENY, filter.filter(newEvent("com.test.audit", Level.INFO, "OTHER")));
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent("com.test.audit", Level.INFO, null)));
+		} finally {
+			filter.stop(1, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void exactMatchWithoutPrefixMatch() throws Exception {
+		TNT4JSelectorFilter filter = newFilter(newRepository(), false);
+		try {
+			assertEquals(Filter.Result.DENY, filter.filter(newEvent("com.test", Level.INFO, null)));
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent("com.test.service.Api", Level.INFO, null)));
+		} finally {
+			filter.stop(1, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void tokensReloadedOnRepositoryChange() throws Exception {
+		CompiledTokenRepository repository = newRepository();
+		TNT4JSelectorFilter filter = newFilter(repository, true);
+		try {
+			assertEquals(Filter.Result.DENY, filter.filter(newEvent("com.test.Api", Level.INFO, null)));
+			repository.set("com.test", "INFO");
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent("com.test.Api", Level.INFO, null)));
+			repository.remove("com.test");
+			assertEquals(Filter.Result.NEUTRAL, filter.filter(newEvent("com.test.Api", Level.TRACE, null)));
+		} finally {
+			filter.stop(1, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014-2024 JKOOL, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jkoolcloud.tnt4j.logger.log4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.junit.jupiter.api.Test;
+
+import com.jkoolcloud.tnt4j.source.SourceType;
+import com.jkoolcloud.tnt4j.tracker.TrackingEvent;
+
+/**
+ * Tests {@link TrackingEventPublisher} of {@link TNT4JManager}: reported events published, and dropped only for
+ * subscriber having full buffer.
+ */
+public class TrackingEventPublisherTest {
+	private static final int EVENTS = 20;
+	private static final int BUFFER_SIZE = 4;
+
+	/**
+	 * Subscriber collecting received events, requesting given number of events on subscribe.
+	 */
+	static class CollectingSubscriber implements Flow.Subscriber<TrackingEvent> {
+		final List<TrackingEvent> events = new CopyOnWriteArrayList<>();
+		private final long initialDemand;
+		private volatile Flow.Subscription subscription;
+
+		CollectingSubscriber(long initialDemand) {
+			this.initialDemand = initialDemand;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (initialDemand > 0) {
+				subscription.request(initialDemand);
+			}
+		}
+
+		@Override
+		public void onNext(TrackingEvent item) {
+			events.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+		}
+
+		@Override
+		public void onComplete() {
+		}
+
+		void request(long n) {
+			subscription.request(n);
+		}
+	}
+
+	static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+		assertTrue(condition.getAsBoolean(), "condition not met in time");
+	}
+
+	@Test
+	public void fullSubscriberBufferDropsOnlyForThatSubscriber() throws Exception {
+		String source = "test.publisher.drop";
+		TNT4JManager manager = TNT4JManager
+				.getManager(new TNT4JManager.FactoryData(new DefaultConfiguration(), source, SourceType.APPL) //
+						.setPublisherBufferSize(BUFFER_SIZE) //
+						.setMetricsOnException(false));
+		manager.startup();
+		try {
+			TrackingEventPublisher publisher = manager.getPublisher();
+			CollectingSubscriber fast = new CollectingSubscriber(Long.MAX_VALUE);
+			// stalled subscriber: no demand, so its buffer fills up
+			CollectingSubscriber stalled = new CollectingSubscriber(0);
+			publisher.subscribe(fast);
+			publisher.subscribe(stalled);
+			await(() -> publisher.getSubscriberCount() == 2 && stalled.subscription != null);
+
+			for (int i = 0; i < EVENTS; i++) {
+				manager.tnt(Log4jLogEvent.newBuilder().setLoggerName("com.test.Publisher").setLevel(Level.INFO)
+						.setMessage(new SimpleMessage("published " + i)).build());
+				// subscriber keeping up gets every event, while stalled one has full buffer
+				int received = i + 1;
+				await(() -> fast.events.size() == received);
+			}
+			assertEquals(EVENTS, publisher.getPublishedCount());
+			// events are published once reported to tracker
+			assertTrue(RecordingSink.get(source).getItems().containsAll(fast.events));
+			assertTrue(stalled.events.isEmpty());
+			long dropped = publisher.getDroppedCount();
+			assertTrue(dropped >= EVENTS - 2 * BUFFER_SIZE && dropped < EVENTS, "dropped: " + dropped);
+
+			// stalled subscriber gets buffered events only
+			stalled.request(Long.MAX_VALUE);
+			await(() -> stalled.events.size() == EVENTS - dropped);
+			assertEquals("published 0", stalled.events.get(0).getMessage());
+			assertEquals(dropped, publisher.getDroppedCount());
+		} finally {
+			manager.stop(1_000, TimeUnit.MILLISECONDS);
+		}
+	}
+}